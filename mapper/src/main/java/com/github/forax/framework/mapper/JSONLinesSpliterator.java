@@ -0,0 +1,146 @@
+package com.github.forax.framework.mapper;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * A spliterator on the values of a <a href="https://jsonlines.org/">JSON Lines</a> file encoded in UTF-8.
+ *
+ * The spliterator covers a range of bytes of the file, a call to {@link #trySplit()} cuts the range
+ * at the first newline after its middle, so each half only contains whole lines and can be parsed
+ * independently by another thread, the order of the lines is preserved by the stream implementation.
+ * When traversed, the range is memory mapped by windows of at most {@link #WINDOW_SIZE} bytes ending
+ * on a newline, so a file of any size can be parsed.
+ *
+ * @param <T> the type of the values.
+ */
+final class JSONLinesSpliterator<T> implements Spliterator<T> {
+  private static final int MIN_SPLIT_SIZE = 1 << 16;
+  private static final int WINDOW_SIZE = 1 << 26;
+
+  private final FileChannel channel;
+  private final Function<? super JSONPullParser, ? extends T> valueReader;
+  private long position;           // position in the file of the next window
+  private final long end;
+  private long windowPosition;     // position in the file of the current window
+  private JSONPullParser parser;   // parser on the current window, null if there is no current window
+
+  /**
+   * Creates a spliterator on the lines of a file between {@code start} and {@code end}.
+   * @param channel a channel on the file.
+   * @param start the position of the first byte of a line.
+   * @param end the position after the last byte of a line.
+   * @param valueReader a function called with a parser on the first token of a line,
+   *                    it reads the whole value and returns the corresponding object.
+   */
+  JSONLinesSpliterator(FileChannel channel, long start, long end, Function<? super JSONPullParser, ? extends T> valueReader) {
+    this.channel = Objects.requireNonNull(channel);
+    this.valueReader = Objects.requireNonNull(valueReader);
+    this.position = start;
+    this.end = end;
+  }
+
+  @Override
+  public boolean tryAdvance(Consumer<? super T> action) {
+    for (;;) {
+      if (parser == null) {
+        if (position == end) {
+          return false;
+        }
+        mapWindow();
+      }
+      try {
+        if (parser.nextDocument()) {
+          action.accept(valueReader.apply(parser));
+          return true;
+        }
+      } catch (IllegalStateException e) {
+        throw new IllegalStateException(e.getMessage() + "\n in the lines starting at byte " + windowPosition, e);
+      }
+      parser = null;
+    }
+  }
+
+  private void mapWindow() {
+    var size = Math.min(end - position, WINDOW_SIZE);
+    try {
+      for (;;) {
+        var buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+        var length = position + size == end ? (int) size : lastNewline(buffer) + 1;
+        if (length == 0) {  // no newline in the window, the line is bigger than the window
+          if (size == Integer.MAX_VALUE) {
+            throw new IllegalStateException("line too long at byte " + position);
+          }
+          size = Math.min(end - position, Math.min(size << 1, Integer.MAX_VALUE));
+          continue;
+        }
+        windowPosition = position;
+        position += length;
+        parser = new JSONPullParser(buffer.limit(length));
+        return;
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static int lastNewline(ByteBuffer buffer) {
+    for (var i = buffer.limit() - 1; i >= 0; i--) {
+      if (buffer.get(i) == '\n') {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  @Override
+  public Spliterator<T> trySplit() {
+    if (parser != null || end - position < MIN_SPLIT_SIZE) {
+      return null;
+    }
+    var middle = nextNewline(position + (end - position) / 2);
+    if (middle == -1) {
+      return null;
+    }
+    var prefix = new JSONLinesSpliterator<T>(channel, position, middle + 1, valueReader);
+    position = middle + 1;
+    return prefix;
+  }
+
+  private long nextNewline(long from) {
+    var buffer = ByteBuffer.allocate(4_096);
+    try {
+      for (var position = from; position < end - 1;) {
+        var read = channel.read(buffer.clear().limit((int) Math.min(buffer.capacity(), end - 1 - position)), position);
+        if (read == -1) {
+          return -1;
+        }
+        for (var i = 0; i < read; i++) {
+          if (buffer.get(i) == '\n') {
+            return position + i;
+          }
+        }
+        position += read;
+      }
+      return -1;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  @Override
+  public long estimateSize() {
+    return end - position;  // in bytes, not in lines
+  }
+
+  @Override
+  public int characteristics() {
+    return ORDERED;
+  }
+}
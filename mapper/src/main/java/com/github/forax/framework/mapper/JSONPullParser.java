@@ -0,0 +1,1236 @@
+package com.github.forax.framework.mapper;
+
+import static java.util.stream.Collectors.joining;
+import static com.github.forax.framework.mapper.JSONPullParser.Kind.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.lang.foreign.MemorySegment;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A JSON parser that let the caller asks for the tokens one by one,
+ * as opposed to {@link ToyJSONParser} that calls a visitor for each value.
+ *
+ * <pre>
+ *   var parser = new JSONPullParser(text);
+ *   parser.nextToken();  // START_OBJECT
+ *   String key;
+ *   while ((key = parser.readKey()) != null) {
+ *     switch (key) {
+ *       case "name" -> name = parser.readString();
+ *       case "age" -> age = parser.readInt();
+ *       default -> parser.skipValue();
+ *     }
+ *   }
+ * </pre>
+ *
+ * The values are only decoded when the caller asks for them, so skipping a value
+ * with {@link #skipValue()} never allocates.
+ * The text is either a String or read from a {@link Reader} using a fixed size buffer.
+ * The text can also be the UTF-8 bytes of a {@link MemorySegment} or a {@link ByteBuffer},
+ * for example a memory mapped file, the bytes are decoded by chunks into the fixed size buffer,
+ * so the text is never copied as a whole, and a string is only created
+ * if the caller asks for its value.
+ *
+ * A parser can be reused to read another text with {@link #reset(String)} or {@link #reset(Reader)},
+ * its buffers are kept, so a steady flow of small texts is parsed without allocating.
+ *
+ * The syntax of the text is checked while reading the tokens, an error is reported as an {@link IllegalStateException},
+ * an {@link IOException} thrown by the reader is reported as an {@link UncheckedIOException}.
+ */
+public final class JSONPullParser {
+  /**
+   * The tokens of a JSON text.
+   */
+  public enum Token {
+    /** The start of an object, '{'. */
+    START_OBJECT,
+    /** The end of an object, '}'. */
+    END_OBJECT,
+    /** The start of an array, '['. */
+    START_ARRAY,
+    /** The end of an array, ']'. */
+    END_ARRAY,
+    /** A key of an object. */
+    KEY,
+    /** A string value. */
+    STRING,
+    /** A number without a fraction or an exponent. */
+    INTEGER,
+    /** A number with a fraction and/or an exponent. */
+    DOUBLE,
+    /** The value true. */
+    TRUE,
+    /** The value false. */
+    FALSE,
+    /** The value null. */
+    NULL,
+    /** The end of the JSON text. */
+    END_DOCUMENT
+  }
+
+  // what is expected by the next call to nextToken()
+  private enum State { VALUE, FIRST_KEY, FIRST_ELEMENT, COLON, NEXT_KEY, NEXT_ELEMENT, END }
+
+  private final Lexer lexer;
+  private Token token;
+  private State state = State.VALUE;
+  private boolean[] inObjects = new boolean[16];  // for each level, true if the level is an object
+  private int depth;
+
+  private JSONPullParser(Lexer lexer) {
+    this.lexer = lexer;
+  }
+
+  /**
+   * Creates a pull parser reading a JSON text.
+   * @param text a JSON text.
+   */
+  public JSONPullParser(String text) {
+    this(new Lexer(Objects.requireNonNull(text)));
+  }
+
+  /**
+   * Creates a pull parser reading a JSON text from a reader, the reader is not closed.
+   * @param reader a reader containing a JSON text.
+   */
+  public JSONPullParser(Reader reader) {
+    this(reader, Lexer.BUFFER_SIZE);
+  }
+
+  JSONPullParser(Reader reader, int bufferSize) {
+    this(new Lexer(Objects.requireNonNull(reader), bufferSize));
+  }
+
+  /**
+   * Creates a pull parser reading a JSON text encoded in UTF-8 from an input stream,
+   * the input stream is not closed.
+   * @param input an input stream containing a JSON text encoded in UTF-8.
+   */
+  public JSONPullParser(InputStream input) {
+    this(new InputStreamReader(Objects.requireNonNull(input), StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Creates a pull parser reading a JSON text encoded in UTF-8 from a memory segment,
+   * for example a memory mapped file.
+   * The bytes are decoded when the corresponding tokens are read, the strings are only created
+   * if their value is asked, for example the keys matched with {@link #keyIndex(Keys)}
+   * or the values skipped with {@link #skipValue()} are never decoded as strings.
+   * The memory segment must stay alive until the whole text is read.
+   *
+   * @param segment a memory segment containing a JSON text encoded in UTF-8.
+   */
+  public JSONPullParser(MemorySegment segment) {
+    this(new UTF8Input(Objects.requireNonNull(segment)));
+  }
+
+  /**
+   * Creates a pull parser reading a JSON text encoded in UTF-8 from the bytes
+   * between the position and the limit of a byte buffer, for example a {@link java.nio.MappedByteBuffer}.
+   * The position of the byte buffer is not changed.
+   *
+   * @param buffer a byte buffer containing a JSON text encoded in UTF-8.
+   *
+   * @see #JSONPullParser(MemorySegment)
+   */
+  public JSONPullParser(ByteBuffer buffer) {
+    this(MemorySegment.ofBuffer(Objects.requireNonNull(buffer)));
+  }
+
+  /**
+   * Resets this parser to read another JSON text, the parser behaves as a parser
+   * created with {@link #JSONPullParser(String)} but its internal buffers are reused,
+   * so parsing many small texts with the same parser does not allocate.
+   * A parser is not thread safe, it should be confined to a thread or pooled.
+   *
+   * @param text a JSON text.
+   */
+  public void reset(String text) {
+    Objects.requireNonNull(text);
+    lexer.reset(text);
+    resetState();
+  }
+
+  /**
+   * Resets this parser to read another JSON text from a reader, the parser behaves as a parser
+   * created with {@link #JSONPullParser(Reader)} but its internal buffers are reused.
+   *
+   * @param reader a reader containing a JSON text, the reader is not closed.
+   *
+   * @see #reset(String)
+   */
+  public void reset(Reader reader) {
+    Objects.requireNonNull(reader);
+    lexer.reset(reader);
+    resetState();
+  }
+
+  private void resetState() {
+    token = null;
+    state = State.VALUE;
+    depth = 0;
+  }
+
+  /**
+   * Returns the current token or {@code null} if {@link #nextToken()} has not been called yet.
+   * @return the current token.
+   */
+  public Token token() {
+    return token;
+  }
+
+  /**
+   * Returns the location of the current token in the text.
+   * @return the location of the current token in the text.
+   */
+  public long location() {
+    return lexer.offset + lexer.start;
+  }
+
+  /**
+   * Returns the nesting level of the current token,
+   * 0 outside of any object or array, 1 inside the top level object or array, etc.
+   * @return the nesting level of the current token.
+   */
+  public int depth() {
+    return depth;
+  }
+
+  /**
+   * Reads the next token.
+   * @return the next token, {@link Token#END_DOCUMENT} if the whole JSON text has been read.
+   * @throws IllegalStateException if the JSON text is not valid.
+   */
+  public Token nextToken() {
+    var lexer = this.lexer;
+    return token = switch (state) {
+      case VALUE -> value(lexer.next());
+      case FIRST_KEY -> {
+        var kind = lexer.next();
+        yield kind == RIGHT_CURLY ? endLevel() : key(kind);
+      }
+      case FIRST_ELEMENT -> {
+        var kind = lexer.next();
+        yield kind == RIGHT_BRACKET ? endLevel() : value(kind);
+      }
+      case COLON -> {
+        lexer.expect(COLON);
+        yield value(lexer.next());
+      }
+      case NEXT_KEY -> switch (lexer.next()) {
+        case COMMA -> key(lexer.next());
+        case RIGHT_CURLY -> endLevel();
+        default -> throw lexer.error(COMMA, RIGHT_CURLY);
+      };
+      case NEXT_ELEMENT -> switch (lexer.next()) {
+        case COMMA -> value(lexer.next());
+        case RIGHT_BRACKET -> endLevel();
+        default -> throw lexer.error(COMMA, RIGHT_BRACKET);
+      };
+      case END -> {
+        if (token != Token.END_DOCUMENT) {
+          lexer.expect(EOF);
+        }
+        yield Token.END_DOCUMENT;
+      }
+    };
+  }
+
+  /**
+   * Reads the first token of the next top level value of a text containing several JSON values
+   * separated by whitespaces, like the lines of a <a href="https://jsonlines.org/">JSON Lines</a> text.
+   * This method should be called before the first value and each time a value has been fully read.
+   *
+   * <pre>
+   *   while (parser.nextDocument()) {
+   *     // the current token is the first token of the value, read the tokens until the end of the value
+   *     while (parser.depth() != 0) {
+   *       parser.nextToken();
+   *     }
+   *   }
+   * </pre>
+   *
+   * @return true if there is a next value, false if the whole text has been read,
+   *         in that case the current token is {@link Token#END_DOCUMENT}.
+   * @throws IllegalStateException if the current value has not been fully read or if the text is not valid.
+   */
+  public boolean nextDocument() {
+    if (state != State.END && (state != State.VALUE || token != null)) {
+      throw error("the end of a value");
+    }
+    if (token == Token.END_DOCUMENT) {
+      return false;
+    }
+    var kind = lexer.next();
+    if (kind == EOF) {
+      token = Token.END_DOCUMENT;
+      return false;
+    }
+    token = value(kind);
+    return true;
+  }
+
+  private Token key(Kind kind) {
+    if (kind != STRING) {
+      throw lexer.error(STRING);
+    }
+    state = State.COLON;
+    return Token.KEY;
+  }
+
+  private Token value(Kind kind) {
+    var token = switch (kind) {
+      case LEFT_CURLY -> {
+        startLevel(true);
+        yield Token.START_OBJECT;
+      }
+      case LEFT_BRACKET -> {
+        startLevel(false);
+        yield Token.START_ARRAY;
+      }
+      case STRING -> Token.STRING;
+      case INTEGER -> Token.INTEGER;
+      case DOUBLE -> Token.DOUBLE;
+      case TRUE -> Token.TRUE;
+      case FALSE -> Token.FALSE;
+      case NULL -> Token.NULL;
+      default -> throw lexer.error(NULL, FALSE, TRUE, INTEGER, DOUBLE, STRING, LEFT_CURLY, LEFT_BRACKET);
+    };
+    if (kind != LEFT_CURLY && kind != LEFT_BRACKET) {
+      afterValue();
+    }
+    return token;
+  }
+
+  private void startLevel(boolean inObject) {
+    if (depth == inObjects.length) {
+      inObjects = Arrays.copyOf(inObjects, depth << 1);
+    }
+    inObjects[depth++] = inObject;
+    state = inObject ? State.FIRST_KEY : State.FIRST_ELEMENT;
+  }
+
+  private Token endLevel() {
+    var inObject = inObjects[--depth];
+    afterValue();
+    return inObject ? Token.END_OBJECT : Token.END_ARRAY;
+  }
+
+  private void afterValue() {
+    if (depth == 0) {
+      state = State.END;
+      return;
+    }
+    state = inObjects[depth - 1] ? State.NEXT_KEY : State.NEXT_ELEMENT;
+  }
+
+  private IllegalStateException error(String expected) {
+    return new IllegalStateException("expect " + expected + " but recognized " + token + " at " + location());
+  }
+
+  /**
+   * Returns the text of the current token if it is a {@link Token#KEY} or a {@link Token#STRING}.
+   * @return the text of the current token.
+   * @throws IllegalStateException if the current token is not a key or a string.
+   */
+  public String stringValue() {
+    if (token != Token.KEY && token != Token.STRING) {
+      throw error("KEY, STRING");
+    }
+    return lexer.string();
+  }
+
+  /**
+   * Returns the value of the current token if it is an {@link Token#INTEGER} that fits in an int.
+   * @return the value of the current token.
+   * @throws IllegalStateException if the current token is not an integer or does not fit in an int.
+   */
+  public int intValue() {
+    var value = longValue();
+    if (value != (int) value) {
+      throw new IllegalStateException("integer " + value + " does not fit in an int at " + location());
+    }
+    return (int) value;
+  }
+
+  /**
+   * Returns the value of the current token if it is an {@link Token#INTEGER} that fits in a long.
+   * @return the value of the current token.
+   * @throws IllegalStateException if the current token is not an integer or does not fit in a long.
+   */
+  public long longValue() {
+    if (token != Token.INTEGER) {
+      throw error("INTEGER");
+    }
+    return lexer.longValue();
+  }
+
+  /**
+   * Returns the value of the current token if it is an {@link Token#INTEGER} or a {@link Token#DOUBLE}.
+   * @return the value of the current token.
+   * @throws IllegalStateException if the current token is not a number.
+   */
+  public double doubleValue() {
+    if (token != Token.INTEGER && token != Token.DOUBLE) {
+      throw error("INTEGER, DOUBLE");
+    }
+    return lexer.doubleValue();
+  }
+
+  /**
+   * The Java type used to represent a number.
+   * @see #numberType()
+   */
+  public enum NumberType {
+    /** An integer that fits in an int. */
+    INT,
+    /** An integer that fits in a long but not in an int. */
+    LONG,
+    /** A number with a fraction or an exponent or an integer that does not fit in a long. */
+    DOUBLE
+  }
+
+  /**
+   * Returns the Java type that should be used to represent the current number.
+   * @return the Java type that should be used to represent the current number.
+   * @throws IllegalStateException if the current token is not a number.
+   */
+  public NumberType numberType() {
+    if (token != Token.INTEGER && token != Token.DOUBLE) {
+      throw error("INTEGER, DOUBLE");
+    }
+    return lexer.numberType();
+  }
+
+  /**
+   * Returns the value of the current token as a Java object.
+   * A string is returned as a {@link String}, true and false as a {@link Boolean}, null as {@code null},
+   * an integer as an {@link Integer} if it fits in 32 bits, as a {@link Long} if it fits in 64 bits
+   * and as a {@link Double} otherwise, a number with a fraction or an exponent as a {@link Double}.
+   *
+   * @return the value of the current token.
+   * @throws IllegalStateException if the current token is not a value or is the start or the end of an object or an array.
+   */
+  public Object value() {
+    return switch (token) {
+      case STRING -> lexer.string();
+      case INTEGER -> lexer.integer();
+      case DOUBLE -> lexer.doubleValue();
+      case TRUE -> true;
+      case FALSE -> false;
+      case NULL -> null;
+      case null, default -> throw error("STRING, INTEGER, DOUBLE, TRUE, FALSE, NULL");
+    };
+  }
+
+  /**
+   * Reads the next key of the current object.
+   * @return the next key or {@code null} if the end of the current object is reached.
+   * @throws IllegalStateException if the parser is not in an object, just before a key.
+   */
+  public String readKey() {
+    return nextKey() ? lexer.string() : null;
+  }
+
+  /**
+   * Moves to the next key of the current object without decoding it.
+   * @return true if the current token is a key, false if the end of the current object is reached.
+   * @throws IllegalStateException if the parser is not in an object, just before a key.
+   *
+   * @see #keyIndex(Keys)
+   */
+  public boolean nextKey() {
+    if (state != State.FIRST_KEY && state != State.NEXT_KEY) {
+      throw new IllegalStateException("not before a key of an object at " + location());
+    }
+    return nextToken() == Token.KEY;
+  }
+
+  /**
+   * Returns the index of the current key in {@code keys}.
+   * The key is matched directly against the characters of the text, so no String is allocated
+   * unless the key contains an escape sequence.
+   *
+   * @param keys a set of keys.
+   * @return the index of the current key in {@code keys} or -1 if the current key is not in {@code keys}.
+   * @throws IllegalStateException if the current token is not a key.
+   */
+  public int keyIndex(Keys keys) {
+    Objects.requireNonNull(keys);
+    if (token != Token.KEY) {
+      throw error("KEY");
+    }
+    return lexer.keyIndex(keys);
+  }
+
+  /**
+   * A set of keys known in advance that can be matched against the keys of a JSON text
+   * without allocating a String for each key.
+   *
+   * The keys are stored in an open addressing hash table indexed by the hash code of the key,
+   * the hash code of a key of the text is computed directly from the characters of the text.
+   *
+   * @see JSONPullParser#keyIndex(Keys)
+   */
+  public static final class Keys {
+    private final List<String> keys;
+    private final char[][] chars;    // the characters of each key
+    private final int[] hashes;      // the hash code of each key
+    private final int[] table;       // the index of a key + 1, 0 if the slot is empty
+    private final Map<String, Integer> indexMap;  // used if a key of the text contains an escape sequence
+
+    private Keys(List<String> keys) {
+      this.keys = keys;
+      var size = keys.size();
+      chars = new char[size][];
+      hashes = new int[size];
+      table = new int[Integer.highestOneBit(Math.max(1, size) << 2)];  // load factor at most 0.5
+      var indexMap = new HashMap<String, Integer>();
+      for (var i = 0; i < size; i++) {
+        var key = keys.get(i);
+        if (indexMap.putIfAbsent(key, i) != null) {
+          throw new IllegalArgumentException("duplicate key " + key);
+        }
+        chars[i] = key.toCharArray();
+        var hash = hashes[i] = key.hashCode();
+        var slot = hash & (table.length - 1);
+        while (table[slot] != 0) {
+          slot = (slot + 1) & (table.length - 1);
+        }
+        table[slot] = i + 1;
+      }
+      this.indexMap = Map.copyOf(indexMap);
+    }
+
+    /**
+     * Creates a set of keys.
+     * @param keys the keys, the index of a key is its index in the list.
+     * @return a new set of keys.
+     * @throws IllegalArgumentException if a key is present twice.
+     */
+    public static Keys of(List<String> keys) {
+      return new Keys(List.copyOf(keys));
+    }
+
+    /**
+     * Creates a set of keys.
+     * @param keys the keys, the index of a key is its index in the array.
+     * @return a new set of keys.
+     * @throws IllegalArgumentException if a key is present twice.
+     */
+    public static Keys of(String... keys) {
+      return of(List.of(keys));
+    }
+
+    /**
+     * Returns the number of keys.
+     * @return the number of keys.
+     */
+    public int size() {
+      return keys.size();
+    }
+
+    /**
+     * Returns the key at {@code index}.
+     * @param index the index of the key.
+     * @return the key at {@code index}.
+     */
+    public String get(int index) {
+      return keys.get(index);
+    }
+
+    /**
+     * Returns the index of a key.
+     * @param key a key.
+     * @return the index of the key or -1 if the key is not in this set.
+     */
+    public int indexOf(String key) {
+      return indexMap.getOrDefault(key, -1);
+    }
+
+    private int indexOf(char[] buffer, int start, int end) {
+      var hash = 0;
+      for (var i = start; i < end; i++) {
+        hash = 31 * hash + buffer[i];
+      }
+      var table = this.table;
+      var length = end - start;
+      for (var slot = hash & (table.length - 1);; slot = (slot + 1) & (table.length - 1)) {
+        var index = table[slot] - 1;
+        if (index == -1) {
+          return -1;
+        }
+        if (hashes[index] == hash) {
+          var key = chars[index];
+          if (key.length == length && Arrays.equals(buffer, start, end, key, 0, length)) {
+            return index;
+          }
+        }
+      }
+    }
+
+    @Override
+    public String toString() {
+      return keys.toString();
+    }
+  }
+
+  /**
+   * Reads the next value which must be a string or null.
+   * @return the next value.
+   * @throws IllegalStateException if the next value is not a string or null.
+   */
+  public String readString() {
+    return switch (nextToken()) {
+      case STRING -> lexer.string();
+      case NULL -> null;
+      default -> throw error("STRING, NULL");
+    };
+  }
+
+  /**
+   * Reads the next value which must be an integer that fits in an int.
+   * @return the next value.
+   * @throws IllegalStateException if the next value is not an integer or does not fit in an int.
+   */
+  public int readInt() {
+    nextToken();
+    return intValue();
+  }
+
+  /**
+   * Skips the next value, if the value is an object or an array, the whole object or array is skipped.
+   * If the current token is a key, the value associated to the key is skipped.
+   * The keys and the values skipped are not decoded.
+   *
+   * @throws IllegalStateException if the next token is not a value.
+   */
+  public void skipValue() {
+    var token = nextToken();
+    if (token != Token.START_OBJECT && token != Token.START_ARRAY) {
+      if (token == Token.END_OBJECT || token == Token.END_ARRAY || token == Token.END_DOCUMENT) {
+        throw error("a value");
+      }
+      return;
+    }
+    var depth = this.depth;
+    do {
+      nextToken();
+    } while (this.depth >= depth);
+  }
+
+  /**
+   * Skips the next value like {@link #skipValue()} but faster, if the value is an object or an array,
+   * the characters are scanned only to count the brackets and to find the strings,
+   * without recognizing the tokens.
+   * The syntax of the content of the object or the array is not checked,
+   * only the fact that the closing bracket matches the opening bracket.
+   *
+   * @throws IllegalStateException if the next token is not a value or if the value is not closed.
+   */
+  public void skipValueUnchecked() {
+    var token = nextToken();
+    if (token != Token.START_OBJECT && token != Token.START_ARRAY) {
+      if (token == Token.END_OBJECT || token == Token.END_ARRAY || token == Token.END_DOCUMENT) {
+        throw error("a value");
+      }
+      return;
+    }
+    var kind = lexer.skipNested();
+    var inObject = inObjects[depth - 1];
+    if ((kind == RIGHT_CURLY) != inObject) {
+      throw lexer.error(inObject ? RIGHT_CURLY : RIGHT_BRACKET);
+    }
+    this.token = endLevel();
+  }
+
+  enum Kind {
+    NULL,
+    TRUE,
+    FALSE,
+    DOUBLE,
+    INTEGER,
+    STRING,
+    LEFT_CURLY,
+    RIGHT_CURLY,
+    LEFT_BRACKET,
+    RIGHT_BRACKET,
+    COLON,
+    COMMA,
+    EOF
+  }
+
+  /**
+   * A lexer that recognizes the tokens one by one without allocating them,
+   * the text of the current token is between {@code start} and {@code end} in the buffer.
+   *
+   * If the lexer reads from a {@link Reader}, the buffer is refilled when all its characters
+   * have been consumed, only the characters of the current token are kept,
+   * so the buffer only grows if a token is bigger than the buffer.
+   */
+  private static final class Lexer {
+    private static final int BUFFER_SIZE = 8_192;
+    private static final int MAX_RETAINED_SIZE = 1 << 16;
+
+    private String input;         // the whole text if it is not read from a reader, null otherwise
+    private Reader reader;        // null if all the characters are already in the buffer
+    private char[] buffer;
+    private int limit;
+    private long offset;          // location of the first character of the buffer in the text
+    private int index;
+    private Kind kind;
+    private int start;
+    private int end;
+    private boolean escaped;      // true if the current string token contains an escape sequence
+    private boolean parsed;       // true if the current integer token has been parsed
+    private boolean overflow;     // true if the current integer token does not fit in a long
+    private long integerValue;    // the value of the current integer token if parsed and not overflow
+
+    private Lexer(String input) {
+      this.input = input;
+      this.reader = null;
+      this.buffer = input.toCharArray();
+      this.limit = buffer.length;
+    }
+
+    private Lexer(Reader reader, int bufferSize) {
+      this.input = null;
+      this.reader = reader;
+      this.buffer = new char[bufferSize];
+    }
+
+    private void reset(String input) {
+      var length = input.length();
+      var buffer = retainedBuffer(length);
+      input.getChars(0, length, buffer, 0);
+      this.input = input;
+      this.reader = null;
+      resetPosition(buffer, length);
+    }
+
+    private void reset(Reader reader) {
+      this.input = null;
+      this.reader = reader;
+      resetPosition(retainedBuffer(BUFFER_SIZE), 0);
+    }
+
+    /**
+     * Returns the current buffer if it has the requested capacity, a buffer that grew
+     * bigger than {@link #MAX_RETAINED_SIZE} is not kept, so reusing a lexer after a big text
+     * does not retain its memory.
+     */
+    private char[] retainedBuffer(int capacity) {
+      var buffer = this.buffer;
+      if (buffer.length >= capacity && buffer.length <= MAX_RETAINED_SIZE) {
+        return buffer;
+      }
+      return new char[Math.max(capacity, BUFFER_SIZE)];
+    }
+
+    private void resetPosition(char[] buffer, int limit) {
+      this.buffer = buffer;
+      this.limit = limit;
+      offset = 0;
+      index = start = end = 0;
+      kind = null;
+      escaped = parsed = overflow = false;
+    }
+
+    /**
+     * Reads more characters into the buffer, moving the current token at the start of the buffer.
+     * @return false if there is no more characters.
+     * @throws UncheckedIOException if the reader throws an IOException.
+     */
+    private boolean fill() {
+      if (reader == null) {
+        return false;
+      }
+      var start = this.start;
+      if (start > 0) {
+        System.arraycopy(buffer, start, buffer, 0, limit - start);
+        limit -= start;
+        index -= start;
+        end -= start;
+        offset += start;
+        this.start = 0;
+      }
+      if (limit == buffer.length) {  // the current token is bigger than the buffer
+        buffer = Arrays.copyOf(buffer, buffer.length << 1);
+      }
+      int read;
+      try {
+        do {
+          read = reader.read(buffer, limit, buffer.length - limit);
+        } while (read == 0);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      if (read == -1) {
+        return false;
+      }
+      limit += read;
+      return true;
+    }
+
+    private Kind next() {
+      parsed = false;
+      var c = skipWhitespaces();
+      var index = start = this.index;
+      this.index = end = index + 1;
+      return kind = switch (c) {
+        case '{' -> LEFT_CURLY;
+        case '}' -> RIGHT_CURLY;
+        case '[' -> LEFT_BRACKET;
+        case ']' -> RIGHT_BRACKET;
+        case ':' -> COLON;
+        case ',' -> COMMA;
+        case '"' -> scanString();
+        case 't' -> scanKeyword(TRUE, "true");
+        case 'f' -> scanKeyword(FALSE, "false");
+        case 'n' -> scanKeyword(NULL, "null");
+        case '-', '0', '1', '2', '3', '4', '5', '6', '7', '8', '9' -> scanNumber();
+        case -1 -> {
+          this.index = end = index;
+          yield EOF;
+        }
+        default -> throw error("unexpected character '" + (char) c + "'", offset + index);
+      };
+    }
+
+    /**
+     * Skips the whitespaces and returns the next character or -1 at the end of the input.
+     */
+    private int skipWhitespaces() {
+      var buffer = this.buffer;
+      var limit = this.limit;
+      var index = this.index;
+      for(;; index++) {
+        if (index == limit) {
+          this.start = this.index = index;
+          if (!fill()) {
+            return -1;
+          }
+          buffer = this.buffer;
+          limit = this.limit;
+          index = this.index;
+        }
+        var c = buffer[index];
+        if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+          this.index = index;
+          return c;
+        }
+      }
+    }
+
+    /**
+     * Skips the content of the current object or array, only the brackets outside the strings are counted.
+     * @return {@link Kind#RIGHT_CURLY} or {@link Kind#RIGHT_BRACKET}, the kind of the closing bracket.
+     */
+    private Kind skipNested() {
+      var buffer = this.buffer;
+      var limit = this.limit;
+      var index = this.index;
+      var depth = 1;
+      var inString = false;
+      var afterBackslash = false;
+      for (;; index++) {
+        if (index == limit) {
+          this.start = this.index = index;  // the skipped characters are not kept in the buffer
+          if (!fill()) {
+            throw error("unterminated object or array", offset + this.index);
+          }
+          buffer = this.buffer;
+          limit = this.limit;
+          index = this.index;
+        }
+        var c = buffer[index];
+        if (inString) {
+          if (afterBackslash) {
+            afterBackslash = false;
+          } else if (c == '\\') {
+            afterBackslash = true;
+          } else if (c == '"') {
+            inString = false;
+          }
+          continue;
+        }
+        switch (c) {
+          case '"' -> inString = true;
+          case '{', '[' -> depth++;
+          case '}', ']' -> {
+            if (--depth == 0) {
+              start = index;
+              this.index = end = index + 1;
+              return kind = c == '}' ? RIGHT_CURLY : RIGHT_BRACKET;
+            }
+          }
+          default -> {}
+        }
+      }
+    }
+
+    private IllegalStateException error(String message, long location) {
+      return new IllegalStateException(message + " at " + location);
+    }
+
+    private IllegalStateException error(Kind... expectedKinds) {
+      return new IllegalStateException("expect " + Arrays.stream(expectedKinds).map(Kind::name).collect(joining(", ")) + " but recognized " + kind + " at " + (offset + start));
+    }
+
+    private void expect(Kind kind) {
+      if (next() != kind) {
+        throw error(kind);
+      }
+    }
+
+    private Kind scanKeyword(Kind kind, String keyword) {
+      var length = keyword.length();
+      while (limit - start < length) {
+        if (!fill()) {
+          throw error("unknown keyword", offset + start);
+        }
+      }
+      var buffer = this.buffer;
+      var start = this.start;
+      for (var i = 1; i < length; i++) {
+        if (buffer[start + i] != keyword.charAt(i)) {
+          throw error("unknown keyword", offset + start);
+        }
+      }
+      index = end = start + length;
+      return kind;
+    }
+
+    /**
+     * Scans the content of a string, sets {@code start} and {@code end} to the bounds of the content
+     * and moves the index after the closing quote.
+     * The escape sequences are checked here, so a string that is never decoded is still valid.
+     */
+    private Kind scanString() {
+      var buffer = this.buffer;
+      var limit = this.limit;
+      var index = this.index;
+      var escaped = false;
+      var afterBackslash = false;
+      var hexDigits = 0;  // the number of hexadecimal digits still expected in a unicode escape
+      start = index;
+      for (;; index++) {
+        if (index == limit) {
+          this.index = index;
+          if (!fill()) {
+            throw error("unterminated string", offset + start - 1);
+          }
+          buffer = this.buffer;
+          limit = this.limit;
+          index = this.index;
+        }
+        var c = buffer[index];
+        if (hexDigits != 0) {
+          if (hexDigit(c) == -1) {
+            throw error("invalid unicode escape", offset + index);
+          }
+          hexDigits--;
+          continue;
+        }
+        if (afterBackslash) {
+          afterBackslash = false;
+          switch (c) {
+            case '"', '\\', '/', 'b', 'f', 'n', 'r', 't' -> {}
+            case 'u' -> hexDigits = 4;
+            default -> throw error("invalid escape sequence", offset + index - 1);
+          }
+          continue;
+        }
+        if (c == '"') {
+          end = index;
+          this.escaped = escaped;
+          this.index = index + 1;
+          return STRING;
+        }
+        if (c == '\\') {
+          escaped = afterBackslash = true;
+          continue;
+        }
+        if (c < 0x20) {
+          throw error("control character in a string", offset + index);
+        }
+      }
+    }
+
+    /**
+     * Scans a number and sets {@code end} to the index after the number.
+     * @return {@link Kind#DOUBLE} if the number has a fraction or an exponent, {@link Kind#INTEGER} otherwise.
+     */
+    private Kind scanNumber() {
+      // scan the characters that may be part of the number, then check the syntax
+      var buffer = this.buffer;
+      var limit = this.limit;
+      var index = this.index;
+      for (;; index++) {
+        if (index == limit) {
+          this.index = index;
+          if (!fill()) {
+            break;
+          }
+          buffer = this.buffer;
+          limit = this.limit;
+          index = this.index;
+        }
+        var c = buffer[index];
+        if ((c < '0' || c > '9') && c != '.' && c != 'e' && c != 'E' && c != '-' && c != '+') {
+          break;
+        }
+      }
+      this.index = end = index;
+      return checkNumber(buffer, start, end);
+    }
+
+    private Kind checkNumber(char[] buffer, int start, int end) {
+      var kind = INTEGER;
+      var i = start;
+      if (buffer[i] == '-') {
+        i++;
+      }
+      if (i == end || !isDigit(buffer[i])) {
+        throw error("invalid number", offset + start);
+      }
+      if (buffer[i] == '0') {
+        i++;
+      } else {
+        i = skipDigits(buffer, i, end);
+      }
+      if (i < end && buffer[i] == '.') {
+        kind = DOUBLE;
+        i++;
+        if (i == end || !isDigit(buffer[i])) {
+          throw error("invalid number", offset + start);
+        }
+        i = skipDigits(buffer, i, end);
+      }
+      if (i < end && (buffer[i] == 'e' || buffer[i] == 'E')) {
+        kind = DOUBLE;
+        i++;
+        if (i < end && (buffer[i] == '+' || buffer[i] == '-')) {
+          i++;
+        }
+        if (i == end || !isDigit(buffer[i])) {
+          throw error("invalid number", offset + start);
+        }
+        i = skipDigits(buffer, i, end);
+      }
+      if (i != end) {
+        throw error("invalid number", offset + start);
+      }
+      return kind;
+    }
+
+    private static boolean isDigit(char c) {
+      return c >= '0' && c <= '9';
+    }
+
+    /**
+     * Returns the value of an hexadecimal digit or -1, unlike {@link Character#digit(char, int)}
+     * only the ASCII digits and letters are accepted.
+     */
+    private static int hexDigit(char c) {
+      if (c >= '0' && c <= '9') {
+        return c - '0';
+      }
+      if (c >= 'a' && c <= 'f') {
+        return c - 'a' + 10;
+      }
+      if (c >= 'A' && c <= 'F') {
+        return c - 'A' + 10;
+      }
+      return -1;
+    }
+
+    private static int skipDigits(char[] buffer, int index, int end) {
+      while (index < end && isDigit(buffer[index])) {
+        index++;
+      }
+      return index;
+    }
+
+    private int keyIndex(Keys keys) {
+      if (escaped) {
+        return keys.indexOf(string());
+      }
+      return keys.indexOf(buffer, start, end);
+    }
+
+    private String string() {
+      var buffer = this.buffer;
+      if (!escaped) {
+        // substring() avoids to compress the characters if the input is latin1
+        return input != null ? input.substring(start, end) : new String(buffer, start, end - start);
+      }
+      var builder = new StringBuilder(end - start);
+      for (var i = start; i < end; i++) {
+        var c = buffer[i];
+        if (c != '\\') {
+          builder.append(c);
+          continue;
+        }
+        c = buffer[++i];
+        switch (c) {
+          case '"', '\\', '/' -> builder.append(c);
+          case 'b' -> builder.append('\b');
+          case 'f' -> builder.append('\f');
+          case 'n' -> builder.append('\n');
+          case 'r' -> builder.append('\r');
+          case 't' -> builder.append('\t');
+          case 'u' -> {
+            if (i + 4 >= end) {
+              throw error("invalid unicode escape", offset + i - 1);
+            }
+            var value = 0;
+            for (var j = i + 1; j <= i + 4; j++) {
+              var digit = hexDigit(buffer[j]);
+              if (digit == -1) {
+                throw error("invalid unicode escape", offset + i - 1);
+              }
+              value = value << 4 | digit;
+            }
+            builder.append((char) value);
+            i += 4;
+          }
+          default -> throw error("invalid escape sequence", offset + i - 1);
+        }
+      }
+      return builder.toString();
+    }
+
+    /**
+     * Parses the current integer directly from the buffer, the result is cached
+     * in {@code integerValue} and {@code overflow} until the next token.
+     */
+    private void parseInteger() {
+      if (parsed) {
+        return;
+      }
+      parsed = true;
+      var buffer = this.buffer;
+      var i = start;
+      var end = this.end;
+      var negative = buffer[i] == '-';
+      if (negative) {
+        i++;
+      }
+      // accumulate negatively, like Long.parseLong, because -Long.MIN_VALUE does not fit in a long
+      var value = 0L;
+      if (end - i <= 18) {  // at most 18 digits, can not overflow
+        for (; i < end; i++) {
+          value = value * 10 - (buffer[i] - '0');
+        }
+      } else {
+        var limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        for (; i < end; i++) {
+          var digit = buffer[i] - '0';
+          if (value < limit / 10 || value * 10 < limit + digit) {
+            overflow = true;
+            return;
+          }
+          value = value * 10 - digit;
+        }
+      }
+      overflow = false;
+      integerValue = negative ? value : -value;
+    }
+
+    private NumberType numberType() {
+      if (kind == DOUBLE) {
+        return NumberType.DOUBLE;
+      }
+      parseInteger();
+      if (overflow) {
+        return NumberType.DOUBLE;
+      }
+      return integerValue == (int) integerValue ? NumberType.INT : NumberType.LONG;
+    }
+
+    private Object integer() {
+      return switch (numberType()) {
+        case INT -> (int) integerValue;
+        case LONG -> integerValue;
+        case DOUBLE -> doubleValue();
+      };
+    }
+
+    private long longValue() {
+      parseInteger();
+      if (overflow) {
+        throw error("integer " + new String(buffer, start, end - start) + " does not fit in a long", offset + start);
+      }
+      return integerValue;
+    }
+
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+        1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20,
+        1e21, 1e22
+    };
+
+    /**
+     * Parses the current number directly from the buffer if the mantissa has at most 53 bits
+     * and the power of ten is exactly representable as a double (Clinger's fast path),
+     * in that case, the result of a multiplication or a division of the two is correctly rounded.
+     * Otherwise, the number is parsed by {@link Double#parseDouble(String)}.
+     */
+    private double doubleValue() {
+      var buffer = this.buffer;
+      var i = start;
+      var end = this.end;
+      var negative = buffer[i] == '-';
+      if (negative) {
+        i++;
+      }
+      var mantissa = 0L;
+      var digits = 0;
+      var exponent = 0;
+      char c = 0;
+      for (; i < end && (c = buffer[i]) >= '0' && c <= '9'; i++) {
+        mantissa = mantissa * 10 + (c - '0');
+        digits += mantissa == 0 ? 0 : 1;
+      }
+      if (c == '.') {
+        for (i++; i < end && (c = buffer[i]) >= '0' && c <= '9'; i++) {
+          mantissa = mantissa * 10 + (c - '0');
+          digits += mantissa == 0 ? 0 : 1;
+          exponent--;
+        }
+      }
+      if (i < end) {  // 'e' or 'E'
+        i++;
+        var negativeExponent = buffer[i] == '-';
+        if (negativeExponent || buffer[i] == '+') {
+          i++;
+        }
+        var value = 0;
+        for (; i < end && value < 1_000; i++) {
+          value = value * 10 + (buffer[i] - '0');
+        }
+        exponent += negativeExponent ? -value : value;
+      }
+      if (digits <= 15 && exponent >= -22 && exponent <= 22 && i == end) {
+        // at most 15 significant digits, so the mantissa is less than 2^53
+        var value = (double) mantissa;
+        value = exponent < 0 ? value / POWERS_OF_TEN[-exponent] : value * POWERS_OF_TEN[exponent];
+        return negative ? -value : value;
+      }
+      return Double.parseDouble(new String(buffer, start, end - start));
+    }
+  }
+
+}
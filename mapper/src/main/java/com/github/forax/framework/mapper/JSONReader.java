@@ -1,64 +1,775 @@
 package com.github.forax.framework.mapper;
 
+import com.github.forax.framework.mapper.JSONPullParser.Keys;
+import com.github.forax.framework.mapper.JSONPullParser.Token;
+
 import java.beans.PropertyDescriptor;
-import java.lang.reflect.Constructor;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.RecordComponent;
+import java.lang.reflect.Type;
+import java.lang.reflect.WildcardType;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static java.lang.invoke.MethodType.methodType;
 
 public class JSONReader {
-  private record BeanData(Constructor<?> constructor, Map<String, PropertyDescriptor> propertyMap) {
-    PropertyDescriptor findProperty(String key) {
-      var property = propertyMap.get(key);
-      if (property == null) {
-        throw new IllegalStateException("unknown key " + key + " for bean " + constructor.getDeclaringClass().getName());
+  /**
+   * A property of a bean or a component of a record.
+   * @param name the name of the property in the JSON text.
+   * @param typeData the type of the property.
+   * @param index the index of the record component, -1 for a bean property.
+   * @param setter the setter of type (Object, Object)void for a bean property, (Object, int)void,
+   *               (Object, long)void, (Object, double)void or (Object, boolean)void if the property type
+   *               is one of these primitive types, null for a record component or for a bean property
+   *               without a setter (its value, written by {@link JSONWriter}, is skipped).
+   */
+  private record Property(String name, TypeData typeData, int index, MethodHandle setter) {}
+
+  /**
+   * A type resolved once, so the element type of a collection is not computed for each JSON value.
+   * @param type the type.
+   * @param rawType the erasure of the type.
+   * @param elementData the type of the elements of an array or a {@link List}, {@link Collection},
+   *                    {@link Set}, {@link Iterable}, the type of the values of a {@link Map} with {@link String} keys,
+   *                    null otherwise.
+   */
+  private record TypeData(Type type, Class<?> rawType, TypeData elementData) {}
+
+  /**
+   * The data needed to create a bean or a record.
+   * @param beanClass the class of the bean or the record.
+   * @param factory the default constructor of type ()Object for a bean,
+   *                the canonical constructor of type (Object[])Object for a record.
+   * @param keys the names of the properties, matched against the keys of the JSON text without allocation.
+   * @param properties the properties, in the same order as the keys.
+   * @param slots for a record, the arguments of the canonical constructor initialized with
+   *              the default value of each component, null for a bean.
+   */
+  private record BeanData(Class<?> beanClass, MethodHandle factory, Keys keys, List<Property> properties, Object[] slots) {
+    BeanData(Class<?> beanClass, MethodHandle factory, List<Property> properties, Object[] slots) {
+      this(beanClass, factory, Keys.of(properties.stream().map(Property::name).toList()), properties, slots);
+    }
+
+    Property findProperty(JSONPullParser parser, boolean ignoreUnknownKeys) {
+      var index = parser.keyIndex(keys);
+      if (index == -1) {
+        if (ignoreUnknownKeys) {
+          return null;
+        }
+        throw new IllegalStateException("unknown key " + parser.stringValue() + " for bean " + beanClass.getName());
       }
-      return property;
+      return properties.get(index);
     }
   }
 
+  private static final MethodType SETTER_TYPE = methodType(void.class, Object.class, Object.class);
+
   private static final ClassValue<BeanData> BEAN_DATA_CLASS_VALUE = new ClassValue<>() {
     @Override
     protected BeanData computeValue(Class<?> type) {
-      throw new UnsupportedOperationException("TODO");
+      return type.isRecord() ? recordData(type) : beanData(type);
+    }
+  };
+
+  private static BeanData beanData(Class<?> type) {
+    var factory = Utils.unreflectConstructor(Utils.defaultConstructor(type))
+        .asType(methodType(Object.class));
+    var properties = Arrays.stream(Utils.beanInfo(type).getPropertyDescriptors())
+        .filter(property -> !property.getName().equals("class"))
+        .map(property -> {
+          var setter = property.getWriteMethod();
+          if (setter == null) {
+            // a read-only property is written by JSONWriter, so its key is known
+            return new Property(propertyName(property), OBJECT_DATA, -1, null);
+          }
+          var parameterType = setter.getParameterTypes()[0];
+          var setterType = parameterType == int.class || parameterType == long.class
+              || parameterType == double.class || parameterType == boolean.class ?
+              methodType(void.class, Object.class, parameterType) : SETTER_TYPE;
+          return new Property(propertyName(property), typeData(setter.getGenericParameterTypes()[0]), -1,
+              Utils.unreflect(setter).asType(setterType));
+        })
+        .toList();
+    return new BeanData(type, factory, properties, null);
+  }
+
+  private static BeanData recordData(Class<?> type) {
+    var components = type.getRecordComponents();
+    var factory = Utils.unreflectConstructor(Utils.canonicalConstructor(type, components))
+        .asSpreader(Object[].class, components.length)
+        .asType(methodType(Object.class, Object[].class));
+    var properties = IntStream.range(0, components.length)
+        .mapToObj(i -> new Property(propertyName(components[i]), typeData(components[i].getGenericType()), i, null))
+        .toList();
+    var slots = Arrays.stream(components)
+        .map(component -> defaultValue(component.getType()))
+        .toArray();
+    return new BeanData(type, factory, properties, slots);
+  }
+
+  private static final TypeData OBJECT_DATA = new TypeData(Object.class, Object.class, null);
+
+  private static final ClassValue<TypeData> TYPE_DATA_CLASS_VALUE = new ClassValue<>() {
+    @Override
+    protected TypeData computeValue(Class<?> type) {
+      return type == Object.class ? OBJECT_DATA : createTypeData(type);
+    }
+  };
+
+  private static final ClassValue<Type> TYPE_REFERENCE_CLASS_VALUE = new ClassValue<>() {
+    @Override
+    protected Type computeValue(Class<?> type) {
+      return Arrays.stream(type.getGenericInterfaces())
+          .flatMap(t -> t instanceof ParameterizedType parameterizedType && parameterizedType.getRawType() == TypeReference.class ?
+              Stream.of(parameterizedType.getActualTypeArguments()[0]) : Stream.empty())
+          .findFirst()
+          .orElseThrow(() -> new IllegalArgumentException("no type argument for TypeReference in " + type.getName()));
     }
   };
 
-  public Object parseJSON(String text, Class<?> beanClass) {
+  /**
+   * The types already resolved by this reader that are not classes.
+   * The classes are resolved once per class by {@link #TYPE_DATA_CLASS_VALUE}.
+   */
+  private final ConcurrentHashMap<Type, TypeData> typeDataMap = new ConcurrentHashMap<>();
+
+  private TypeData cachedTypeData(Type type) {
+    return type instanceof Class<?> clazz ?
+        TYPE_DATA_CLASS_VALUE.get(clazz) : typeDataMap.computeIfAbsent(type, JSONReader::createTypeData);
+  }
+
+  private static TypeData typeData(Type type) {
+    return type instanceof Class<?> clazz ? TYPE_DATA_CLASS_VALUE.get(clazz) : createTypeData(type);
+  }
+
+  private static TypeData createTypeData(Type type) {
+    var rawType = Utils.erase(type);
+    if (rawType.isArray()) {
+      var componentType = type instanceof GenericArrayType genericArrayType ?
+          genericArrayType.getGenericComponentType() : rawType.getComponentType();
+      return new TypeData(type, rawType, typeData(componentType));
+    }
+    if (rawType == List.class || rawType == Collection.class || rawType == Iterable.class || rawType == Set.class) {
+      return new TypeData(type, rawType, typeData(typeArgument(type, 0)));
+    }
+    if (rawType == Map.class) {
+      var keyType = Utils.erase(typeArgument(type, 0));
+      if (keyType == String.class || keyType == CharSequence.class || keyType == Object.class) {
+        return new TypeData(type, rawType, typeData(typeArgument(type, 1)));
+      }
+    }
+    return new TypeData(type, rawType, null);
+  }
+
+  private static Type typeArgument(Type type, int index) {
+    var typeArgument = type instanceof ParameterizedType parameterizedType ?
+        parameterizedType.getActualTypeArguments()[index] : Object.class;
+    return typeArgument instanceof WildcardType wildcardType ? wildcardType.getUpperBounds()[0] : typeArgument;
+  }
+
+  private static String propertyName(PropertyDescriptor property) {
+    // like JSONWriter, the annotation can be on the getter, it can also be on the setter
+    var getter = property.getReadMethod();
+    var annotation = getter == null ? null : getter.getAnnotation(JSONProperty.class);
+    var setter = property.getWriteMethod();
+    if (annotation == null && setter != null) {
+      annotation = setter.getAnnotation(JSONProperty.class);
+    }
+    return annotation == null ? property.getName() : annotation.value();
+  }
+
+  private static String propertyName(RecordComponent component) {
+    var annotation = component.getAnnotation(JSONProperty.class);
+    return annotation == null ? component.getName() : annotation.value();
+  }
+
+  private static Object defaultValue(Class<?> type) {
+    return type.isPrimitive() ? Array.get(Array.newInstance(type, 1), 0) : null;
+  }
+
+  private final boolean ignoreUnknownKeys;
+
+  /**
+   * Creates a reader that rejects the keys that do not correspond to a property
+   * of the bean or the record being created.
+   *
+   * @see #builder()
+   */
+  public JSONReader() {
+    this(false);
+  }
+
+  private JSONReader(boolean ignoreUnknownKeys) {
+    this.ignoreUnknownKeys = ignoreUnknownKeys;
+  }
+
+  /**
+   * Returns a builder of a reader.
+   * @return a builder of a reader.
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * A builder of a thread safe {@link JSONReader}.
+   * A builder is not thread safe.
+   */
+  public static final class Builder {
+    private boolean ignoreUnknownKeys;
+
+    private Builder() {}
+
+    /**
+     * Ignores the keys that do not correspond to a property of the bean or the record being created.
+     * The value of an unknown key is skipped by only counting the brackets and the quotes
+     * (see {@link JSONPullParser#skipValueUnchecked()}), so the time spent on the unused parts
+     * of a JSON text is proportional to their size but nothing is decoded or allocated.
+     *
+     * @param ignoreUnknownKeys true if the unknown keys should be ignored.
+     * @return this builder.
+     */
+    public Builder ignoreUnknownKeys(boolean ignoreUnknownKeys) {
+      this.ignoreUnknownKeys = ignoreUnknownKeys;
+      return this;
+    }
+
+    /**
+     * Creates a reader with the configuration of this builder.
+     * @return a new reader.
+     */
+    public JSONReader build() {
+      return new JSONReader(ignoreUnknownKeys);
+    }
+  }
+
+  /**
+   * Creates an instance of {@code beanClass} from a JSON text.
+   * The nested objects are converted to the type of the corresponding property,
+   * a bean (with a public default constructor and setters), a record, a {@link List} or a {@link Set},
+   * an enum is read from the name of its constant like {@link JSONWriter} writes it.
+   *
+   * @param text a JSON text.
+   * @param beanClass the class of the result.
+   * @return an instance of {@code beanClass} initialized with the values of the JSON text.
+   * @param <T> the type of the result.
+   * @throws IllegalStateException if the JSON text is not valid or does not match the type.
+   */
+  public <T> T parseJSON(String text, Class<T> beanClass) {
     Objects.requireNonNull(text);
     Objects.requireNonNull(beanClass);
-    var visitor = new ToyJSONParser.JSONVisitor() {
-      private BeanData beanData;
-      private Object result;
+    return beanClass.cast(parseJSON(text, (Type) beanClass));
+  }
 
-      @Override
-      public void value(String key, Object value) {
-        // call the corresponding setter on result
-        throw new UnsupportedOperationException("TODO");
-      }
+  /**
+   * Creates an instance of {@code type} from a JSON text.
+   * Unlike {@link #parseJSON(String, Class)}, the type can be a parameterized type,
+   * so the elements of a {@link List}, the values of a {@link Map} with {@link String} keys
+   * and the elements of an array are created with the type of the corresponding type argument.
+   * The resolution of the type arguments is done once per type and cached by this reader.
+   *
+   * @param text a JSON text.
+   * @param type the type of the result.
+   * @return an instance of {@code type} initialized with the values of the JSON text.
+   * @throws IllegalStateException if the JSON text is not valid or does not match the type.
+   */
+  public Object parseJSON(String text, Type type) {
+    Objects.requireNonNull(text);
+    Objects.requireNonNull(type);
+    var parser = PARSER_POOL.acquire();
+    parser.reset(text);
+    try {
+      return parse(parser, cachedTypeData(type));
+    } catch (IllegalStateException e) {
+      throw new IllegalStateException(e.getMessage() + "\n while parsing " + text, e);
+    } finally {
+      release(parser);
+    }
+  }
+
+  /**
+   * A type token, the type argument of an anonymous class implementing this interface
+   * is the type used to create the result of {@link #parseJSON(String, TypeReference)}.
+   * <pre>
+   *   List&lt;Person&gt; persons = reader.parseJSON(text, new TypeReference&lt;List&lt;Person&gt;&gt;() {});
+   * </pre>
+   * @param <T> the type of the result.
+   */
+  public interface TypeReference<T> {}
+
+  /**
+   * Creates an instance of the type argument of {@code typeReference} from a JSON text.
+   *
+   * @param text a JSON text.
+   * @param typeReference an instance of an anonymous class implementing {@link TypeReference}.
+   * @return an instance of the type argument of {@code typeReference} initialized with the values of the JSON text.
+   * @param <T> the type of the result.
+   * @throws IllegalArgumentException if the class of {@code typeReference} does not specify the type argument.
+   * @throws IllegalStateException if the JSON text is not valid or does not match the type.
+   *
+   * @see #parseJSON(String, Type)
+   */
+  @SuppressWarnings("unchecked")
+  public <T> T parseJSON(String text, TypeReference<T> typeReference) {
+    Objects.requireNonNull(text);
+    Objects.requireNonNull(typeReference);
+    return (T) parseJSON(text, TYPE_REFERENCE_CLASS_VALUE.get(typeReference.getClass()));
+  }
+
+  /**
+   * Creates an instance of {@code beanClass} from a JSON text read from a reader.
+   * The text is read using a fixed size buffer and the objects are created as soon as they are read.
+   *
+   * @param reader a reader containing a JSON text, the reader is not closed.
+   * @param beanClass the class of the result.
+   * @return an instance of {@code beanClass} initialized with the values of the JSON text.
+   * @param <T> the type of the result.
+   * @throws IOException if the reader throws an IOException.
+   * @throws IllegalStateException if the JSON text is not valid or does not match the type.
+   *
+   * @see #parseJSON(String, Class)
+   */
+  public <T> T readJSON(Reader reader, Class<T> beanClass) throws IOException {
+    Objects.requireNonNull(reader);
+    Objects.requireNonNull(beanClass);
+    var parser = PARSER_POOL.acquire();
+    parser.reset(reader);
+    try {
+      return beanClass.cast(parse(parser, TYPE_DATA_CLASS_VALUE.get(beanClass)));
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    } finally {
+      release(parser);
+    }
+  }
+
+  /**
+   * Returns a stream of instances of {@code beanClass} created from a
+   * <a href="https://jsonlines.org/">JSON Lines</a> text read from a reader,
+   * one JSON value per line.
+   * The stream is lazy, each line is read when the stream asks for the next element,
+   * and all the lines are read with the same fixed size buffer, so a text of any size
+   * can be read in constant memory.
+   * The stream is sequential; the reader is not closed.
+   *
+   * @param reader a reader containing a JSON Lines text.
+   * @param beanClass the class of the elements of the stream.
+   * @return a stream of instances of {@code beanClass}, one per line.
+   * @param <T> the type of the elements of the stream.
+   *
+   * @see #readJSON(Reader, Class)
+   * @see JSONWriter#toJSONLines(Stream, java.io.OutputStream)
+   */
+  public <T> Stream<T> readJSONLines(Reader reader, Class<T> beanClass) {
+    Objects.requireNonNull(reader);
+    Objects.requireNonNull(beanClass);
+    return jsonLines(new JSONPullParser(reader), beanClass);
+  }
+
+  /**
+   * Returns a stream of instances of {@code beanClass} created from a
+   * <a href="https://jsonlines.org/">JSON Lines</a> text encoded in UTF-8 read from an input stream.
+   * The input stream is not closed.
+   *
+   * @param input an input stream containing a JSON Lines text encoded in UTF-8.
+   * @param beanClass the class of the elements of the stream.
+   * @return a stream of instances of {@code beanClass}, one per line.
+   * @param <T> the type of the elements of the stream.
+   *
+   * @see #readJSONLines(Reader, Class)
+   */
+  public <T> Stream<T> readJSONLines(InputStream input, Class<T> beanClass) {
+    Objects.requireNonNull(input);
+    Objects.requireNonNull(beanClass);
+    return jsonLines(new JSONPullParser(input), beanClass);
+  }
+
+  /**
+   * Returns a parallel stream of instances of {@code beanClass} created from a
+   * <a href="https://jsonlines.org/">JSON Lines</a> file encoded in UTF-8, one JSON value per line.
+   * The file is memory mapped and split at newline boundaries into chunks
+   * that are parsed in parallel by the threads of the {@link java.util.concurrent.ForkJoinPool}
+   * running the stream pipeline.
+   * The stream is ordered, so {@link Stream#toList()} or {@link Stream#forEachOrdered(Consumer)}
+   * see the values in the order of the lines, {@link Stream#unordered()} lets the pipeline
+   * avoid the cost of keeping the order, {@link Stream#sequential()} parses the lines in one thread.
+   *
+   * The stream must be closed to close the file, for example using a try-with-resources.
+   *
+   * @param path the path of a JSON Lines file.
+   * @param beanClass the class of the elements of the stream.
+   * @return a parallel stream of instances of {@code beanClass}, one per line.
+   * @param <T> the type of the elements of the stream.
+   * @throws IOException if the file can not be opened.
+   *
+   * @see #readJSONLines(InputStream, Class)
+   */
+  public <T> Stream<T> readJSONLines(Path path, Class<T> beanClass) throws IOException {
+    Objects.requireNonNull(path);
+    Objects.requireNonNull(beanClass);
+    var typeData = TYPE_DATA_CLASS_VALUE.get(beanClass);
+    var channel = FileChannel.open(path, StandardOpenOption.READ);
+    try {
+      var spliterator = new JSONLinesSpliterator<T>(channel, 0, channel.size(),
+          parser -> beanClass.cast(readValue(parser, typeData)));
+      return StreamSupport.stream(spliterator, true)
+          .onClose(() -> {
+            try {
+              channel.close();
+            } catch (IOException e) {
+              throw new UncheckedIOException(e);
+            }
+          });
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
 
+  private <T> Stream<T> jsonLines(JSONPullParser parser, Class<T> beanClass) {
+    var typeData = TYPE_DATA_CLASS_VALUE.get(beanClass);
+    var spliterator = new Spliterators.AbstractSpliterator<T>(Long.MAX_VALUE, Spliterator.ORDERED) {
       @Override
-      public void startObject(String key) {
-        //get the beanData and store it in the field
-        //create an instance and store it in result
-        throw new UnsupportedOperationException("TODO");
+      public boolean tryAdvance(Consumer<? super T> action) {
+        if (!parser.nextDocument()) {
+          return false;
+        }
+        action.accept(beanClass.cast(readValue(parser, typeData)));
+        return true;
       }
+    };
+    return StreamSupport.stream(spliterator, false);
+  }
 
-      @Override
-      public void endObject(String key) {
-        // do nothing
+  /**
+   * The parsers used by {@link #parseJSON(String, Type)} and {@link #readJSON(Reader, Class)},
+   * a parser is reset for each call, so a steady flow of calls reuses the buffers of the parsers.
+   */
+  private static final ObjectPool<JSONPullParser> PARSER_POOL = new ObjectPool<>(() -> new JSONPullParser(""));
+
+  private static void release(JSONPullParser parser) {
+    parser.reset("");  // do not retain the last text or reader
+    PARSER_POOL.release(parser);
+  }
+
+  private Object parse(JSONPullParser parser, TypeData typeData) {
+    parser.nextToken();
+    var value = readValue(parser, typeData);
+    parser.nextToken();  // check that there is nothing after
+    return value;
+  }
+
+  private static IllegalStateException error(JSONPullParser parser, Type type) {
+    return new IllegalStateException("can not convert " + parser.token() + " to " + type.getTypeName() + " at " + parser.location());
+  }
+
+  private Object readValue(JSONPullParser parser, TypeData typeData) {
+    var rawType = typeData.rawType;
+    return switch (parser.token()) {
+      case START_OBJECT -> readObject(parser, typeData);
+      case START_ARRAY -> readArray(parser, typeData);
+      case NULL -> {
+        if (rawType.isPrimitive()) {
+          throw error(parser, typeData.type);
+        }
+        yield null;
       }
+      default -> readScalar(parser, rawType);
+    };
+  }
 
-      @Override
-      public void startArray(String key) {
-        throw new UnsupportedOperationException("Implemented later");
+  private static Object readScalar(JSONPullParser parser, Class<?> type) {
+    var token = parser.token();
+    if (type == Object.class) {
+      return parser.value();
+    }
+    switch (token) {
+      case STRING -> {
+        if (type == String.class || type == CharSequence.class) {
+          return parser.stringValue();
+        }
+        if (type == char.class || type == Character.class) {
+          // JSONWriter writes a char as a string of one character
+          var text = parser.stringValue();
+          if (text.length() == 1) {
+            return text.charAt(0);
+          }
+        } else if (type == char[].class) {
+          return parser.stringValue().toCharArray();
+        } else if (type.isEnum()) {
+          return readEnum(parser, type);
+        }
+      }
+      case TRUE, FALSE -> {
+        if (type == boolean.class || type == Boolean.class) {
+          return token == Token.TRUE;
+        }
       }
+      case INTEGER, DOUBLE -> {
+        if (type == int.class || type == Integer.class) {
+          return parser.intValue();
+        }
+        if (type == long.class || type == Long.class) {
+          return parser.longValue();
+        }
+        if (type == double.class || type == Double.class) {
+          return parser.doubleValue();
+        }
+        if (type == float.class || type == Float.class) {
+          return (float) parser.doubleValue();
+        }
+        if (type == short.class || type == Short.class) {
+          var value = parser.intValue();
+          if (value != (short) value) {
+            throw new IllegalStateException("integer " + value + " does not fit in a short at " + parser.location());
+          }
+          return (short) value;
+        }
+        if (type == byte.class || type == Byte.class) {
+          var value = parser.intValue();
+          if (value != (byte) value) {
+            throw new IllegalStateException("integer " + value + " does not fit in a byte at " + parser.location());
+          }
+          return (byte) value;
+        }
+        if (type == Number.class) {
+          return parser.value();
+        }
+      }
+      default -> {}
+    }
+    throw error(parser, type);
+  }
 
-      @Override
-      public void endArray(String key) {
-        throw new UnsupportedOperationException("Implemented later");
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private static Object readEnum(JSONPullParser parser, Class<?> type) {
+    // JSONWriter writes an enum as the name of the constant
+    var name = parser.stringValue();
+    try {
+      return Enum.valueOf((Class) type, name);
+    } catch (IllegalArgumentException e) {
+      throw new IllegalStateException("no constant " + name + " in " + type.getName() + " at " + parser.location(), e);
+    }
+  }
+
+  private Object readObject(JSONPullParser parser, TypeData typeData) {
+    var rawType = typeData.rawType;
+    if (rawType == Object.class) {
+      return readMap(parser, OBJECT_DATA);
+    }
+    if (rawType == Map.class && typeData.elementData != null) {
+      return readMap(parser, typeData.elementData);
+    }
+    if (rawType.isPrimitive() || rawType.isInterface() || rawType.isArray() || rawType.getName().startsWith("java.")) {
+      throw error(parser, typeData.type);
+    }
+    var beanData = BEAN_DATA_CLASS_VALUE.get(rawType);
+    return rawType.isRecord() ? readRecord(parser, beanData) : readBean(parser, beanData);
+  }
+
+  private Map<String, Object> readMap(JSONPullParser parser, TypeData valueData) {
+    var map = new LinkedHashMap<String, Object>();
+    String key;
+    while ((key = parser.readKey()) != null) {
+      parser.nextToken();
+      map.put(key, readValue(parser, valueData));
+    }
+    return Collections.unmodifiableMap(map);
+  }
+
+  private Object readBean(JSONPullParser parser, BeanData beanData) {
+    Object bean;
+    try {
+      bean = (Object) beanData.factory.invokeExact();
+    } catch (Throwable e) {
+      throw Utils.rethrow(e);
+    }
+    while (parser.nextKey()) {
+      var property = beanData.findProperty(parser, ignoreUnknownKeys);
+      if (property == null || property.setter == null) {
+        parser.skipValueUnchecked();
+        continue;
+      }
+      parser.nextToken();
+      try {
+        readProperty(parser, bean, property);
+      } catch (Throwable e) {
+        throw Utils.rethrow(e);
       }
+    }
+    return bean;
+  }
+
+  private void readProperty(JSONPullParser parser, Object bean, Property property) throws Throwable {
+    // the primitive values are not boxed
+    var typeData = property.typeData;
+    var type = typeData.rawType;
+    var setter = property.setter;
+    if (type == int.class) {
+      setter.invokeExact(bean, readInt(parser));
+    } else if (type == long.class) {
+      setter.invokeExact(bean, readLong(parser));
+    } else if (type == double.class) {
+      setter.invokeExact(bean, readDouble(parser));
+    } else if (type == boolean.class) {
+      setter.invokeExact(bean, readBoolean(parser));
+    } else {
+      setter.invokeExact(bean, readValue(parser, typeData));
+    }
+  }
+
+  private static int readInt(JSONPullParser parser) {
+    if (parser.token() != Token.INTEGER) {
+      throw error(parser, int.class);
+    }
+    return parser.intValue();
+  }
+
+  private static long readLong(JSONPullParser parser) {
+    if (parser.token() != Token.INTEGER) {
+      throw error(parser, long.class);
+    }
+    return parser.longValue();
+  }
+
+  private static double readDouble(JSONPullParser parser) {
+    var token = parser.token();
+    if (token != Token.INTEGER && token != Token.DOUBLE) {
+      throw error(parser, double.class);
+    }
+    return parser.doubleValue();
+  }
+
+  private static boolean readBoolean(JSONPullParser parser) {
+    return switch (parser.token()) {
+      case TRUE -> true;
+      case FALSE -> false;
+      default -> throw error(parser, boolean.class);
     };
-    ToyJSONParser.parse(text, visitor);
-    return visitor.result;
+  }
+
+  private Object readRecord(JSONPullParser parser, BeanData beanData) {
+    // the missing components are initialized with their default value
+    var args = beanData.slots.clone();
+    while (parser.nextKey()) {
+      var property = beanData.findProperty(parser, ignoreUnknownKeys);
+      if (property == null) {
+        parser.skipValueUnchecked();
+        continue;
+      }
+      parser.nextToken();
+      args[property.index] = readValue(parser, property.typeData);
+    }
+    try {
+      return (Object) beanData.factory.invokeExact(args);
+    } catch (Throwable e) {
+      throw Utils.rethrow(e);
+    }
+  }
+
+  private Object readArray(JSONPullParser parser, TypeData typeData) {
+    var rawType = typeData.rawType;
+    if (rawType.isArray()) {
+      var componentType = rawType.getComponentType();
+      if (componentType == int.class) {
+        return readInts(parser);
+      }
+      if (componentType == long.class) {
+        return readLongs(parser);
+      }
+      if (componentType == double.class) {
+        return readDoubles(parser);
+      }
+      var list = readElements(parser, typeData.elementData);
+      if (!componentType.isPrimitive()) {
+        return list.toArray((Object[]) Array.newInstance(componentType, list.size()));
+      }
+      var array = Array.newInstance(componentType, list.size());
+      for (var i = 0; i < list.size(); i++) {
+        Array.set(array, i, list.get(i));
+      }
+      return array;
+    }
+    if (rawType == Object.class) {
+      return Collections.unmodifiableList(readElements(parser, OBJECT_DATA));
+    }
+    if (rawType == List.class || rawType == Collection.class || rawType == Iterable.class) {
+      return Collections.unmodifiableList(readElements(parser, typeData.elementData));
+    }
+    if (rawType == Set.class) {
+      return Collections.unmodifiableSet(new LinkedHashSet<>(readElements(parser, typeData.elementData)));
+    }
+    throw error(parser, typeData.type);
+  }
+
+  private static int[] readInts(JSONPullParser parser) {
+    var array = new int[16];
+    var size = 0;
+    while (parser.nextToken() != Token.END_ARRAY) {
+      if (size == array.length) {
+        array = Arrays.copyOf(array, size << 1);
+      }
+      array[size++] = readInt(parser);
+    }
+    return Arrays.copyOf(array, size);
+  }
+
+  private static long[] readLongs(JSONPullParser parser) {
+    var array = new long[16];
+    var size = 0;
+    while (parser.nextToken() != Token.END_ARRAY) {
+      if (size == array.length) {
+        array = Arrays.copyOf(array, size << 1);
+      }
+      array[size++] = readLong(parser);
+    }
+    return Arrays.copyOf(array, size);
+  }
+
+  private static double[] readDoubles(JSONPullParser parser) {
+    var array = new double[16];
+    var size = 0;
+    while (parser.nextToken() != Token.END_ARRAY) {
+      if (size == array.length) {
+        array = Arrays.copyOf(array, size << 1);
+      }
+      array[size++] = readDouble(parser);
+    }
+    return Arrays.copyOf(array, size);
+  }
+
+  private ArrayList<Object> readElements(JSONPullParser parser, TypeData elementData) {
+    var list = new ArrayList<>();
+    while (parser.nextToken() != Token.END_ARRAY) {
+      list.add(readValue(parser, elementData));
+    }
+    return list;
   }
 }
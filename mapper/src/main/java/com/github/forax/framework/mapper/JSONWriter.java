@@ -3,13 +3,40 @@ package com.github.forax.framework.mapper;
 import java.beans.BeanInfo;
 import java.beans.IntrospectionException;
 import java.beans.PropertyDescriptor;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.TemporalAccessor;
+import java.time.temporal.TemporalAmount;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.OptionalDouble;
+import java.util.OptionalInt;
+import java.util.OptionalLong;
+import java.util.RandomAccess;
 import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 public final class JSONWriter {
 
@@ -20,7 +47,243 @@ public final class JSONWriter {
       return beanInfo.getPropertyDescriptors();
     }
   };
-  private final HashMap<Class<?>, Generator> sub = new HashMap<>();
+  private volatile Configuration configuration;
+  private final boolean frozen;
+
+  /**
+   * Creates a writer that can be configured using {@link #configure(Class, Function)},
+   * {@link #setEscapeNonASCII(boolean)} and {@link #setBytecodeGeneration(boolean)}.
+   * Each change of the configuration creates a new configuration (copy on write),
+   * so the writer can be shared by several threads.
+   *
+   * @see #builder()
+   */
+  public JSONWriter() {
+    this(new Configuration(Map.of(), false, false), false);
+  }
+
+  private JSONWriter(Configuration configuration, boolean frozen) {
+    this.configuration = configuration;
+    this.frozen = frozen;
+  }
+
+  /**
+   * Returns a builder of an immutable writer.
+   * @return a builder of an immutable writer.
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * A builder of an immutable and thread safe {@link JSONWriter}.
+   * A builder is not thread safe.
+   */
+  public static final class Builder {
+    private final HashMap<Class<?>, Generator> generatorMap = new HashMap<>();
+    private boolean escapeNonASCII;
+    private boolean bytecodeGeneration;
+
+    private Builder() {}
+
+    /**
+     * Registers a function that returns the JSON text of the instances of a class.
+     *
+     * @param type the class.
+     * @param function the function that returns the JSON text.
+     * @return this builder.
+     * @throws IllegalStateException if a function is already registered for the class.
+     */
+    public <T> Builder configure(Class<? extends T> type, Function<? super T, String> function) {
+      Objects.requireNonNull(type);
+      Objects.requireNonNull(function);
+      if (generatorMap.putIfAbsent(type, customGenerator(type, function)) != null) {
+        throw new IllegalStateException("a function is already configured for " + type.getName());
+      }
+      return this;
+    }
+
+    /**
+     * Escapes the non-ASCII characters of the strings.
+     * @param escapeNonASCII true if the non-ASCII characters should be escaped.
+     * @return this builder.
+     * @see JSONWriter#setEscapeNonASCII(boolean)
+     */
+    public Builder escapeNonASCII(boolean escapeNonASCII) {
+      this.escapeNonASCII = escapeNonASCII;
+      return this;
+    }
+
+    /**
+     * Generates the generators of the beans and the records at runtime.
+     * @param bytecodeGeneration true if the generators should be generated at runtime.
+     * @return this builder.
+     * @see JSONWriter#setBytecodeGeneration(boolean)
+     */
+    public Builder bytecodeGeneration(boolean bytecodeGeneration) {
+      this.bytecodeGeneration = bytecodeGeneration;
+      return this;
+    }
+
+    /**
+     * Creates an immutable writer, the configuration of the writer can not be changed.
+     * @return a new immutable writer.
+     */
+    public JSONWriter build() {
+      return new JSONWriter(new Configuration(Map.copyOf(generatorMap), escapeNonASCII, bytecodeGeneration), true);
+    }
+  }
+
+  /**
+   * The configuration of a writer, a configuration is never modified once created.
+   * Changing only {@code escapeNonASCII} keeps the same {@link Generators}, so the generators
+   * already computed (and the generated classes) are reused.
+   */
+  private static final class Configuration {
+    private final Generators generators;
+    private final boolean escapeNonASCII;
+
+    private Configuration(Map<Class<?>, Generator> generatorMap, boolean escapeNonASCII, boolean bytecodeGeneration) {
+      this(new Generators(generatorMap, bytecodeGeneration), escapeNonASCII);
+    }
+
+    private Configuration(Generators generators, boolean escapeNonASCII) {
+      this.generators = generators;
+      this.escapeNonASCII = escapeNonASCII;
+    }
+
+    private Configuration withGenerator(Class<?> type, Generator generator) {
+      var generatorMap = new HashMap<>(generators.generatorMap);
+      if (generatorMap.putIfAbsent(type, generator) != null) {
+        throw new IllegalStateException("a function is already configured for " + type.getName());
+      }
+      return new Configuration(Map.copyOf(generatorMap), escapeNonASCII, generators.bytecodeGeneration);
+    }
+
+    private Configuration withEscapeNonASCII(boolean escapeNonASCII) {
+      return new Configuration(generators, escapeNonASCII);
+    }
+
+    private Configuration withBytecodeGeneration(boolean bytecodeGeneration) {
+      return new Configuration(generators.withBytecodeGeneration(bytecodeGeneration), escapeNonASCII);
+    }
+  }
+
+  /**
+   * The generators of a configuration, the generators do not depend on {@code escapeNonASCII}
+   * (it is read from the writer when a value is written).
+   * The generators configured by the user are merged with the generators computed for each class,
+   * so finding the generator of a class is only one call to {@link ClassValue#get(Class)}.
+   */
+  private static final class Generators {
+    private final Map<Class<?>, Generator> generatorMap;
+    private final boolean bytecodeGeneration;
+    private final ClassValue<Generator> generators = new ClassValue<>() {
+      @Override
+      protected Generator computeValue(Class<?> type) {
+        var generator = generatorMap.get(type);
+        if (generator != null) {
+          return generator;
+        }
+        return bytecodeGeneration ? bytecodeGenerator(type) : DATA_CLASS_VALUE_Q4.get(type);
+      }
+    };
+    private final HashMap<Class<?>, Generator> bytecodeGenerators = new HashMap<>();  // guarded by this
+    private Generators opposite;  // the generators with the other value of bytecodeGeneration, guarded by this
+
+    private Generators(Map<Class<?>, Generator> generatorMap, boolean bytecodeGeneration) {
+      this.generatorMap = generatorMap;
+      this.bytecodeGeneration = bytecodeGeneration;
+    }
+
+    private Generator get(Class<?> type) {
+      return generators.get(type);
+    }
+
+    /**
+     * Returns generators with the same user defined generators, switching back and forth
+     * between the two values of bytecodeGeneration reuses the generators already computed.
+     */
+    private synchronized Generators withBytecodeGeneration(boolean bytecodeGeneration) {
+      if (bytecodeGeneration == this.bytecodeGeneration) {
+        return this;
+      }
+      if (opposite == null) {
+        opposite = new Generators(generatorMap, bytecodeGeneration);
+        opposite.opposite = this;  // not yet published
+      }
+      return opposite;
+    }
+
+    private synchronized Generator bytecodeGenerator(Class<?> type) {
+      var generator = bytecodeGenerators.get(type);
+      if (generator != null) {
+        return generator;
+      }
+      return createBytecodeGenerator(type, new HashSet<>());
+    }
+
+    /**
+     * Returns true if the generator of the values of a property of that type is always the same,
+     * so it can be called directly.
+     */
+    private boolean isDirectlyCallable(Class<?> type) {
+      return Modifier.isFinal(type.getModifiers()) && !type.isPrimitive() && !type.isArray() &&
+          type != String.class && type != Boolean.class && type != Integer.class && type != Double.class &&
+          !generatorMap.containsKey(type);
+    }
+
+    private Generator createBytecodeGenerator(Class<?> type, HashSet<Class<?>> inProgress) {
+      Generator generator;
+      if (builtinGenerator(type) != null || !Utils.isAccessible(type)) {
+        generator = DATA_CLASS_VALUE_Q4.get(type);
+      } else {
+        inProgress.add(type);
+        var builder = new SerializerClassBuilder(type);
+        var properties = type.isRecord() ? recordProperties(type) : beanProperties(type);
+        for (var i = 0; i < properties.size(); i++) {
+          var property = properties.get(i);
+          var getter = property.getReadMethod();
+          var annotation = getter.getAnnotation(JSONProperty.class);
+          var val = annotation == null ? property.getName() : annotation.value();
+          var separator = i == 0 ? "" : ", ";
+          var prefix = Prefix.of(separator, val, false);
+          var asciiPrefix = Prefix.of(separator, val, true);
+          var returnType = getter.getReturnType();
+          if (returnType.isPrimitive() && returnType != char.class &&
+              !generatorMap.containsKey(MethodType.methodType(returnType).wrap().returnType())) {
+            builder.primitiveProperty(getter, prefix, asciiPrefix);
+          } else if (isDirectlyCallable(returnType) && !inProgress.contains(returnType)) {
+            var nestedGenerator = bytecodeGenerators.get(returnType);
+            if (nestedGenerator == null) {
+              nestedGenerator = createBytecodeGenerator(returnType, inProgress);
+            }
+            builder.nestedProperty(getter, prefix, asciiPrefix, nestedGenerator);
+          } else {
+            builder.property(getter, prefix, asciiPrefix);
+          }
+        }
+        generator = (Generator) builder.define(MethodHandles.lookup());
+        inProgress.remove(type);
+      }
+      bytecodeGenerators.put(type, generator);
+      return generator;
+    }
+  }
+
+  private static <T> Generator customGenerator(Class<? extends T> type, Function<? super T, String> function) {
+    return (writer, bean, appendable) -> appendable.append(function.apply(type.cast(bean)));
+  }
+
+  private void checkNotFrozen() {
+    if (frozen) {
+      throw new IllegalStateException("this writer is immutable");
+    }
+  }
+
+  private boolean escapeNonASCII() {
+    return configuration.escapeNonASCII;
+  }
 
   private static List<PropertyDescriptor> beanProperties(Class<?> type) {
     var beanInfo = Utils.beanInfo(type);
@@ -126,7 +389,7 @@ public final class JSONWriter {
       case Double d -> String.valueOf(d);
       default -> {
         Generator gen = DATA_CLASS_VALUE_Q4.get(o.getClass());
-        yield gen.generate(this, o);
+        yield generate(gen, o);
       }
     };
   }
@@ -135,10 +398,42 @@ public final class JSONWriter {
     Objects.requireNonNull(oClass);
     Objects.requireNonNull(func);
 
-    var res = sub.putIfAbsent(oClass, (writer, bean) -> func.apply(oClass.cast(bean)));
+    synchronized (this) {
+      checkNotFrozen();
+      configuration = configuration.withGenerator(oClass, customGenerator(oClass, func));
+    }
+  }
 
-    if (res != null) {
-      throw new IllegalStateException();
+  /**
+   * Asks to escape the non-ASCII characters of the strings (as <code>&#92;uXXXX</code>),
+   * so the JSON text only contains ASCII characters.
+   * By default, the non-ASCII characters are not escaped.
+   *
+   * @param escapeNonASCII true if the non-ASCII characters should be escaped.
+   * @throws IllegalStateException if this writer has been created by a {@link Builder}.
+   */
+  public void setEscapeNonASCII(boolean escapeNonASCII) {
+    synchronized (this) {
+      checkNotFrozen();
+      configuration = configuration.withEscapeNonASCII(escapeNonASCII);
+    }
+  }
+
+  /**
+   * Asks to generate at runtime, for each bean or record, a hidden class that writes the properties
+   * with straight-line code and calls directly the generators of the properties typed by a final class
+   * (a record by example).
+   * The generated classes are specific to the current configuration of this writer.
+   * If a bean class is not accessible from this package, the generic generator is used.
+   * By default, no bytecode is generated.
+   *
+   * @param bytecodeGeneration true if the generators should be generated at runtime.
+   * @throws IllegalStateException if this writer has been created by a {@link Builder}.
+   */
+  public void setBytecodeGeneration(boolean bytecodeGeneration) {
+    synchronized (this) {
+      checkNotFrozen();
+      configuration = configuration.withBytecodeGeneration(bytecodeGeneration);
     }
   }
 
@@ -151,58 +446,558 @@ public final class JSONWriter {
       case Double d -> String.valueOf(d);
       default -> {
         var type = o.getClass();
-        var gen = sub.get(type);
+        var gen = configuration.generators.generatorMap.get(type);
         if (gen == null) {
           gen = DATA_CLASS_VALUE_Q4.get(type);
         }
-        yield gen.generate(this, o);
+        yield generate(gen, o);
       }
     };
   }
 
+  private String generate(Generator generator, Object o) {
+    var builder = new StringBuilder();
+    try {
+      generator.generate(this, o, builder);
+    } catch (IOException e) {
+      throw new AssertionError(e);  // a StringBuilder never throws an IOException
+    }
+    return builder.toString();
+  }
+
+  /**
+   * The string builders used by {@link #toJSON(Object)} and the UTF-8 outputs used by
+   * {@link #toUTF8(Object, OutputStream)} and {@link #toJSONLines(Stream, OutputStream)},
+   * they are reset for each call, so a steady flow of calls reuses their buffers.
+   * A string builder that grew bigger than {@link #MAX_POOLED_CAPACITY} is not reused.
+   */
+  private static final ObjectPool<StringBuilder> BUILDER_POOL = new ObjectPool<>(StringBuilder::new);
+  private static final ObjectPool<UTF8Output> UTF8_OUTPUT_POOL =
+      new ObjectPool<>(() -> new UTF8Output(OutputStream.nullOutputStream()));
+  private static final int MAX_POOLED_CAPACITY = 1 << 16;
+
   public String toJSON(Object o) {
-    return switch (o) {
-      case null -> "null";
-      case String str -> "\"" + str + "\"";
-      case Boolean b -> String.valueOf(b);
-      case Integer i -> String.valueOf(i);
-      case Double d -> String.valueOf(d);
-      default -> {
-        var type = o.getClass();
-        var gen = sub.get(type);
-        if (gen == null) {
-          gen = DATA_CLASS_VALUE_Q4.get(type);
+    var builder = BUILDER_POOL.acquire();
+    try {
+      toJSON(o, builder);
+      return builder.toString();
+    } catch (IOException e) {
+      throw new AssertionError(e);  // a StringBuilder never throws an IOException
+    } finally {
+      if (builder.capacity() <= MAX_POOLED_CAPACITY) {
+        builder.setLength(0);
+        BUILDER_POOL.release(builder);
+      }
+    }
+  }
+
+  private static UTF8Output acquireUTF8Output(OutputStream output) {
+    Objects.requireNonNull(output);
+    var utf8Output = UTF8_OUTPUT_POOL.acquire();
+    utf8Output.reset(output);
+    return utf8Output;
+  }
+
+  private static void release(UTF8Output utf8Output) {
+    utf8Output.reset(null);  // do not retain the output stream
+    UTF8_OUTPUT_POOL.release(utf8Output);
+  }
+
+  /**
+   * Writes the JSON representation of an object into an appendable.
+   * All the nested objects are written in the same appendable, so no intermediary string is created.
+   * If the appendable is a {@link java.io.Writer}, it should be buffered.
+   *
+   * @param o the object to write.
+   * @param appendable the appendable the JSON text is written into.
+   * @throws IOException if the appendable throws an IOException.
+   */
+  public void toJSON(Object o, Appendable appendable) throws IOException {
+    Objects.requireNonNull(appendable);
+    switch (o) {
+      case null -> appendable.append("null");
+      case String str -> writeString(str, escapeNonASCII(), appendable);
+      case Boolean b -> appendable.append(b ? "true" : "false");
+      case Integer i -> writeInt(appendable, i);
+      case Double d -> writeDouble(appendable, d);
+      default -> configuration.generators.get(o.getClass()).generate(this, o, appendable);
+    }
+  }
+
+  // the following helper methods are also called by the bytecode generated by SerializerClassBuilder
+
+  private static void writePrefix(JSONWriter writer, Prefix prefix, Prefix asciiPrefix, Appendable appendable) throws IOException {
+    (writer.escapeNonASCII() ? asciiPrefix : prefix).appendTo(appendable);
+  }
+
+  private static void writeNested(Generator generator, JSONWriter writer, Object value, Appendable appendable) throws IOException {
+    if (value == null) {
+      appendable.append("null");
+      return;
+    }
+    generator.generate(writer, value, appendable);
+  }
+
+  private static void writeBoolean(Appendable appendable, boolean value) throws IOException {
+    appendable.append(value ? "true" : "false");
+  }
+
+  private static void writeInt(Appendable appendable, int value) throws IOException {
+    if (appendable instanceof StringBuilder builder) {
+      builder.append(value);
+    } else if (appendable instanceof UTF8Output utf8Output) {
+      utf8Output.writeLong(value);
+    } else {
+      appendable.append(Integer.toString(value));
+    }
+  }
+
+  private static void writeLong(Appendable appendable, long value) throws IOException {
+    if (appendable instanceof StringBuilder builder) {
+      builder.append(value);
+    } else if (appendable instanceof UTF8Output utf8Output) {
+      utf8Output.writeLong(value);
+    } else {
+      appendable.append(Long.toString(value));
+    }
+  }
+
+  private static void writeDouble(Appendable appendable, double value) throws IOException {
+    if (appendable instanceof StringBuilder builder) {
+      builder.append(value);
+    } else {
+      appendable.append(Double.toString(value));
+    }
+  }
+
+  private static void writeFloat(Appendable appendable, float value) throws IOException {
+    if (appendable instanceof StringBuilder builder) {
+      builder.append(value);
+    } else {
+      appendable.append(Float.toString(value));
+    }
+  }
+
+  private void writeCollection(Collection<?> collection, Appendable appendable) throws IOException {
+    appendable.append('[');
+    if (collection instanceof List<?> list && list instanceof RandomAccess) {
+      for (var i = 0; i < list.size(); i++) {
+        if (i != 0) {
+          appendable.append(", ");
         }
-        yield gen.generate(this, o);
+        toJSON(list.get(i), appendable);
       }
-    };
+    } else {
+      var separator = "";
+      for (var element : collection) {
+        appendable.append(separator);
+        separator = ", ";
+        toJSON(element, appendable);
+      }
+    }
+    appendable.append(']');
+  }
+
+  private void writeMap(Map<?, ?> map, Appendable appendable) throws IOException {
+    appendable.append('{');
+    var separator = "";
+    for (var entry : map.entrySet()) {
+      if (!(entry.getKey() instanceof String key)) {
+        throw new IllegalArgumentException("the key of a map must be a string " + entry.getKey());
+      }
+      appendable.append(separator);
+      separator = ", ";
+      writeString(key, escapeNonASCII(), appendable);
+      appendable.append(": ");
+      toJSON(entry.getValue(), appendable);
+    }
+    appendable.append('}');
+  }
+
+
+  /**
+   * Writes the JSON representation of an object encoded in UTF-8 into an output stream.
+   * The output stream is neither flushed nor closed.
+   *
+   * @param o the object to write.
+   * @param output the output stream the JSON text is written into.
+   * @throws IOException if the output stream throws an IOException.
+   */
+  public void toUTF8(Object o, OutputStream output) throws IOException {
+    var utf8Output = acquireUTF8Output(output);
+    try {
+      toJSON(o, utf8Output);
+      utf8Output.finish();
+    } finally {
+      release(utf8Output);
+    }
+  }
+
+  /**
+   * Writes the elements of a stream as a <a href="https://jsonlines.org/">JSON Lines</a> text
+   * encoded in UTF-8 into an output stream, the JSON representation of each element followed by '\n'.
+   * The elements are written as soon as the stream produces them, using the same fixed size buffer,
+   * so a stream of any size can be written in constant memory.
+   * The output stream is neither flushed nor closed.
+   *
+   * @param stream the stream of objects to write.
+   * @param output the output stream the JSON Lines text is written into.
+   * @throws IOException if the output stream throws an IOException.
+   *
+   * @see JSONReader#readJSONLines(java.io.InputStream, Class)
+   */
+  public void toJSONLines(Stream<?> stream, OutputStream output) throws IOException {
+    Objects.requireNonNull(stream);
+    var utf8Output = acquireUTF8Output(output);
+    try {
+      for (var iterator = stream.iterator(); iterator.hasNext();) {
+        toJSON(iterator.next(), utf8Output);
+        utf8Output.append('\n');
+      }
+      utf8Output.finish();
+    } finally {
+      release(utf8Output);
+    }
   }
 
+  /**
+   * Writes the JSON representation of an object encoded in UTF-8 into a byte buffer,
+   * starting at the position of the byte buffer.
+   * If the byte buffer is not big enough, a bigger byte buffer is allocated and the content
+   * of the byte buffer is copied into it.
+   *
+   * @param o the object to write.
+   * @param byteBuffer the byte buffer the JSON text is written into.
+   * @return the byte buffer containing the JSON text, either {@code byteBuffer} or a bigger one,
+   *         its position is just after the JSON text.
+   */
+  public ByteBuffer toUTF8(Object o, ByteBuffer byteBuffer) {
+    var utf8Output = new UTF8Output(byteBuffer);
+    try {
+      toJSON(o, utf8Output);
+      return utf8Output.finish();
+    } catch (IOException e) {
+      throw new AssertionError(e);  // a byte buffer never throws an IOException
+    }
+  }
+
+
+  private static final String[] ESCAPES = new String[128];
+  static {
+    for (var c = 0; c < 0x20; c++) {
+      ESCAPES[c] = "\\u%04x".formatted(c);
+    }
+    ESCAPES['"'] = "\\\"";
+    ESCAPES['\\'] = "\\\\";
+    ESCAPES['\b'] = "\\b";
+    ESCAPES['\f'] = "\\f";
+    ESCAPES['\n'] = "\\n";
+    ESCAPES['\r'] = "\\r";
+    ESCAPES['\t'] = "\\t";
+  }
+  private static final boolean[] NEED_ESCAPE = new boolean[128];
+  static {
+    for (var c = 0; c < 128; c++) {
+      NEED_ESCAPE[c] = ESCAPES[c] != null;
+    }
+  }
+  private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+  private static int indexOfEscape(String text, int start, boolean escapeNonASCII) {
+    var length = text.length();
+    for (var i = start; i < length; i++) {
+      var c = text.charAt(i);
+      if (c < 128 ? NEED_ESCAPE[c] : escapeNonASCII) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Writes a string as a JSON string, between quotes.
+   * The runs of characters that do not need to be escaped are appended in one call,
+   * so a string with nothing to escape is appended as is.
+   */
+  private static void writeString(String text, boolean escapeNonASCII, Appendable appendable) throws IOException {
+    appendable.append('"');
+    var index = indexOfEscape(text, 0, escapeNonASCII);
+    if (index == -1) {
+      appendable.append(text).append('"');
+      return;
+    }
+    var start = 0;
+    do {
+      if (start != index) {
+        appendable.append(text, start, index);
+      }
+      var c = text.charAt(index);
+      if (c < 128) {
+        appendable.append(ESCAPES[c]);
+      } else {
+        appendable.append('\\').append('u')
+            .append(HEX_DIGITS[c >> 12]).append(HEX_DIGITS[(c >> 8) & 0xF])
+            .append(HEX_DIGITS[(c >> 4) & 0xF]).append(HEX_DIGITS[c & 0xF]);
+      }
+      start = index + 1;
+      index = indexOfEscape(text, start, escapeNonASCII);
+    } while (index != -1);
+    if (start != text.length()) {
+      appendable.append(text, start, text.length());
+    }
+    appendable.append('"');
+  }
+
+  private record Prefix(String text, byte[] utf8) {
+    private static Prefix of(String separator, String name, boolean escapeNonASCII) {
+      var builder = new StringBuilder(separator);
+      try {
+        writeString(name, escapeNonASCII, builder);
+      } catch (IOException e) {
+        throw new AssertionError(e);  // a StringBuilder never throws an IOException
+      }
+      var text = builder.append(": ").toString();
+      return new Prefix(text, text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void appendTo(Appendable appendable) throws IOException {
+      if (appendable instanceof UTF8Output utf8Output) {
+        utf8Output.write(utf8);
+      } else {
+        appendable.append(text);
+      }
+    }
+  }
 
   @FunctionalInterface
   private interface Generator {
-    String generate(JSONWriter writer, Object bean);
+    void generate(JSONWriter writer, Object bean, Appendable appendable) throws IOException;
   }
 
   private static final ClassValue<Generator> DATA_CLASS_VALUE_Q4 = new ClassValue<>() {
     @Override
     protected Generator computeValue(Class<?> type) {
-      var properties = type.isRecord() ? recordProperties(type) : beanProperties(type);
+      var generator = builtinGenerator(type);
+      return generator != null ? generator : beanGenerator(type);
+    }
+  };
 
-      var generators = properties.stream()
-              .filter(p -> !p.getName().equals("class"))
-              .<Generator>map(e -> {
-                var getter = e.getReadMethod();
-                var annotation = getter.getAnnotation(JSONProperty.class);
-                var val = annotation == null ? e.getName() : annotation.value();
-                var prefix = '"' + val + "\": ";
-                return (writer, bean) -> prefix + writer.toJSON(Utils.invokeMethod(bean, getter));
-              }).toList();
+  /**
+   * Returns the generator of the types known by the writer or null if the type is a bean or a record.
+   */
+  private static Generator builtinGenerator(Class<?> type) {
+    if (type.isArray()) {
+      return arrayGenerator(type.getComponentType());
+    }
+    if (Collection.class.isAssignableFrom(type)) {
+      return (writer, bean, appendable) -> writer.writeCollection((Collection<?>) bean, appendable);
+    }
+    if (Map.class.isAssignableFrom(type)) {
+      return (writer, bean, appendable) -> writer.writeMap((Map<?, ?>) bean, appendable);
+    }
+    if (type == Optional.class) {
+      return (writer, bean, appendable) -> writer.toJSON(((Optional<?>) bean).orElse(null), appendable);
+    }
+    if (type == OptionalInt.class) {
+      return (writer, bean, appendable) -> {
+        var optional = (OptionalInt) bean;
+        if (optional.isPresent()) {
+          writeInt(appendable, optional.getAsInt());
+        } else {
+          appendable.append("null");
+        }
+      };
+    }
+    if (type == OptionalLong.class) {
+      return (writer, bean, appendable) -> {
+        var optional = (OptionalLong) bean;
+        if (optional.isPresent()) {
+          writeLong(appendable, optional.getAsLong());
+        } else {
+          appendable.append("null");
+        }
+      };
+    }
+    if (type == OptionalDouble.class) {
+      return (writer, bean, appendable) -> {
+        var optional = (OptionalDouble) bean;
+        if (optional.isPresent()) {
+          writeDouble(appendable, optional.getAsDouble());
+        } else {
+          appendable.append("null");
+        }
+      };
+    }
+    if (type == Long.class) {
+      return (writer, bean, appendable) -> writeLong(appendable, (Long) bean);
+    }
+    if (type == Float.class) {
+      return (writer, bean, appendable) -> writeFloat(appendable, (Float) bean);
+    }
+    if (type == Short.class || type == Byte.class) {
+      return (writer, bean, appendable) -> writeInt(appendable, ((Number) bean).intValue());
+    }
+    if (type == BigInteger.class || type == BigDecimal.class) {
+      return (writer, bean, appendable) -> appendable.append(bean.toString());
+    }
+    if (Enum.class.isAssignableFrom(type)) {
+      return (writer, bean, appendable) -> writeString(((Enum<?>) bean).name(), writer.escapeNonASCII(), appendable);
+    }
+    if (type == Character.class || isJavaTime(type)) {
+      // java.time types are written using their ISO-8601 representation
+      return (writer, bean, appendable) -> writeString(bean.toString(), writer.escapeNonASCII(), appendable);
+    }
+    return null;
+  }
 
-      return (writer, bean) -> generators.stream().map(generator -> generator.generate(writer, bean))
-              .collect(Collectors.joining(", ", "{", "}"));
+  private static boolean isJavaTime(Class<?> type) {
+    return type.getPackageName().startsWith("java.time") &&
+        (TemporalAccessor.class.isAssignableFrom(type) || TemporalAmount.class.isAssignableFrom(type) || ZoneId.class.isAssignableFrom(type));
+  }
+
+  private static Generator arrayGenerator(Class<?> componentType) {
+    if (!componentType.isPrimitive()) {
+      return (writer, bean, appendable) -> {
+        var array = (Object[]) bean;
+        appendable.append('[');
+        for (var i = 0; i < array.length; i++) {
+          if (i != 0) {
+            appendable.append(", ");
+          }
+          writer.toJSON(array[i], appendable);
+        }
+        appendable.append(']');
+      };
     }
-  };
+    if (componentType == int.class) {
+      return (writer, bean, appendable) -> {
+        var array = (int[]) bean;
+        appendable.append('[');
+        for (var i = 0; i < array.length; i++) {
+          if (i != 0) {
+            appendable.append(", ");
+          }
+          writeInt(appendable, array[i]);
+        }
+        appendable.append(']');
+      };
+    }
+    if (componentType == long.class) {
+      return (writer, bean, appendable) -> {
+        var array = (long[]) bean;
+        appendable.append('[');
+        for (var i = 0; i < array.length; i++) {
+          if (i != 0) {
+            appendable.append(", ");
+          }
+          writeLong(appendable, array[i]);
+        }
+        appendable.append(']');
+      };
+    }
+    if (componentType == double.class) {
+      return (writer, bean, appendable) -> {
+        var array = (double[]) bean;
+        appendable.append('[');
+        for (var i = 0; i < array.length; i++) {
+          if (i != 0) {
+            appendable.append(", ");
+          }
+          writeDouble(appendable, array[i]);
+        }
+        appendable.append(']');
+      };
+    }
+    if (componentType == char.class) {
+      return (writer, bean, appendable) -> writeString(new String((char[]) bean), writer.escapeNonASCII(), appendable);
+    }
+    // boolean[], byte[], short[] and float[] are less common, use the boxed values
+    return (writer, bean, appendable) -> {
+      var length = Array.getLength(bean);
+      appendable.append('[');
+      for (var i = 0; i < length; i++) {
+        if (i != 0) {
+          appendable.append(", ");
+        }
+        writer.toJSON(Array.get(bean, i), appendable);
+      }
+      appendable.append(']');
+    };
+  }
+
+  private static Generator beanGenerator(Class<?> type) {
+    var properties = type.isRecord() ? recordProperties(type) : beanProperties(type);
+
+    var generators = IntStream.range(0, properties.size())
+            .mapToObj(i -> {
+              var property = properties.get(i);
+              var getter = property.getReadMethod();
+              var annotation = getter.getAnnotation(JSONProperty.class);
+              var val = annotation == null ? property.getName() : annotation.value();
+              var separator = i == 0 ? "" : ", ";
+              var prefix = Prefix.of(separator, val, false);
+              var asciiPrefix = Prefix.of(separator, val, true);
+              return propertyGenerator(getter, prefix, asciiPrefix);
+            })
+            .toArray(Generator[]::new);
+
+    return (writer, bean, appendable) -> {
+      appendable.append('{');
+      for (var generator : generators) {
+        generator.generate(writer, bean, appendable);
+      }
+      appendable.append('}');
+    };
+  }
+
+  /**
+   * Creates the generator of a property, the getter is called through a lambda created by the
+   * {@link java.lang.invoke.LambdaMetafactory} so the JIT can inline it.
+   * The getters returning an int, a double or a boolean are called without boxing
+   * (the generators registered with configure() are not used for those types anyway).
+   * If the lambda can not be created, the getter is called by reflection.
+   */
+  @SuppressWarnings("unchecked")
+  private static Generator propertyGenerator(Method getter, Prefix prefix, Prefix asciiPrefix) {
+    var returnType = getter.getReturnType();
+    if (returnType == int.class) {
+      var function = (ToIntFunction<Object>) Utils.getterAsLambda(getter, ToIntFunction.class, MethodType.methodType(int.class, Object.class));
+      if (function != null) {
+        return (writer, bean, appendable) -> {
+          var value = function.applyAsInt(bean);
+          (writer.escapeNonASCII() ? asciiPrefix : prefix).appendTo(appendable);
+          writeInt(appendable, value);
+        };
+      }
+    }
+    if (returnType == double.class) {
+      var function = (ToDoubleFunction<Object>) Utils.getterAsLambda(getter, ToDoubleFunction.class, MethodType.methodType(double.class, Object.class));
+      if (function != null) {
+        return (writer, bean, appendable) -> {
+          var value = function.applyAsDouble(bean);
+          (writer.escapeNonASCII() ? asciiPrefix : prefix).appendTo(appendable);
+          writeDouble(appendable, value);
+        };
+      }
+    }
+    if (returnType == boolean.class) {
+      var function = (Predicate<Object>) Utils.getterAsLambda(getter, Predicate.class, MethodType.methodType(boolean.class, Object.class));
+      if (function != null) {
+        return (writer, bean, appendable) -> {
+          var value = function.test(bean);
+          (writer.escapeNonASCII() ? asciiPrefix : prefix).appendTo(appendable);
+          appendable.append(value ? "true" : "false");
+        };
+      }
+    }
+    var lambda = (Function<Object, Object>) Utils.getterAsLambda(getter, Function.class, MethodType.methodType(Object.class, Object.class));
+    var function = lambda != null ? lambda : (Function<Object, Object>) bean -> Utils.invokeMethod(bean, getter);
+    return (writer, bean, appendable) -> {
+      var value = function.apply(bean);
+      (writer.escapeNonASCII() ? asciiPrefix : prefix).appendTo(appendable);
+      writer.toJSON(value, appendable);
+    };
+  }
 
 
 }
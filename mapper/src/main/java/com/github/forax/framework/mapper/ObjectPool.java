@@ -0,0 +1,55 @@
+package com.github.forax.framework.mapper;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+
+/**
+ * A small lock-free pool of reusable objects, for example a parser or a buffer,
+ * so a steady flow of calls reuses the same objects instead of allocating new ones.
+ *
+ * The pool has a few slots, a thread always uses the same slot, so with a few threads each thread
+ * mostly reuses its own object. {@link #acquire()} empties the slot and {@link #release(Object)}
+ * fills it again, so an object is never used by two threads at the same time, even if a thread
+ * calls {@link #acquire()} twice before releasing the first object, it just gets a new object.
+ * Unlike a {@link ThreadLocal}, the objects are not tied to the lifetime of the threads,
+ * so the pool also works with a lot of short-lived or virtual threads.
+ *
+ * @param <T> the type of the objects.
+ */
+final class ObjectPool<T> {
+  private static final int SLOT_COUNT =
+      Math.min(64, Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1) << 1);
+
+  private final Supplier<? extends T> factory;
+  private final AtomicReferenceArray<T> slots = new AtomicReferenceArray<>(SLOT_COUNT);
+
+  /**
+   * Creates a pool.
+   * @param factory the function called to create an object if the slot of the current thread is empty.
+   */
+  ObjectPool(Supplier<? extends T> factory) {
+    this.factory = Objects.requireNonNull(factory);
+  }
+
+  private static int slot() {
+    return (int) Thread.currentThread().threadId() & (SLOT_COUNT - 1);
+  }
+
+  /**
+   * Returns the object of the slot of the current thread or a new object if the slot is empty.
+   * @return an object that is not used by another thread.
+   */
+  T acquire() {
+    var object = slots.getAndSet(slot(), null);
+    return object != null ? object : factory.get();
+  }
+
+  /**
+   * Puts an object back in the slot of the current thread, the object must not be used after this call.
+   * @param object the object to reuse.
+   */
+  void release(T object) {
+    slots.setRelease(slot(), object);
+  }
+}
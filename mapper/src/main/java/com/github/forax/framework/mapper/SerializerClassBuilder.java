@@ -0,0 +1,212 @@
+package com.github.forax.framework.mapper;
+
+import java.lang.classfile.ClassFile;
+import java.lang.classfile.CodeBuilder;
+import java.lang.constant.ClassDesc;
+import java.lang.constant.ConstantDescs;
+import java.lang.constant.DynamicConstantDesc;
+import java.lang.constant.MethodTypeDesc;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+import static java.lang.constant.ConstantDescs.CD_Object;
+import static java.lang.constant.ConstantDescs.CD_char;
+import static java.lang.constant.ConstantDescs.CD_void;
+
+/**
+ * Generates the bytecode of a generator of {@link JSONWriter} specialized for a bean or a record.
+ *
+ * The generated class implements {@code JSONWriter.Generator}, it calls each getter directly and writes
+ * the properties one after the other. The class is written using the {@link ClassFile} API
+ * which computes the stack map frames, the maximum stack size and the number of local variables.
+ * The prefixes and the generators of the nested objects are stored as class data of the hidden class
+ * and loaded as constants (using {@link MethodHandles#classDataAt(MethodHandles.Lookup, String, Class, int)}),
+ * so the JIT can inline the nested generators.
+ *
+ * The generated code calls the private static helper methods of {@link JSONWriter}
+ * (writePrefix, writeInt, writeNested, etc), that's why the generated class is defined
+ * as a nestmate of JSONWriter.
+ */
+final class SerializerClassBuilder {
+  private static final ClassDesc CD_WRITER = ClassDesc.of("com.github.forax.framework.mapper.JSONWriter");
+  private static final ClassDesc CD_GENERATOR = CD_WRITER.nested("Generator");
+  private static final ClassDesc CD_PREFIX = CD_WRITER.nested("Prefix");
+  private static final ClassDesc CD_APPENDABLE = ClassDesc.of("java.lang.Appendable");
+
+  // local variables of generate(JSONWriter writer, Object bean, Appendable appendable)
+  private static final int WRITER_SLOT = 1;
+  private static final int OBJECT_SLOT = 2;
+  private static final int APPENDABLE_SLOT = 3;
+  private static final int BEAN_SLOT = 4;
+
+  private final Class<?> beanType;
+  private final ClassDesc beanDesc;
+  private final ArrayList<Object> classData = new ArrayList<>();
+  private final ArrayList<Consumer<CodeBuilder>> properties = new ArrayList<>();
+
+  /**
+   * Starts the generation of a generator for a bean type.
+   * The bean type must be {@link Utils#isAccessible(Class) accessible}.
+   *
+   * @param beanType the type of the bean or the record.
+   */
+  SerializerClassBuilder(Class<?> beanType) {
+    this.beanType = Objects.requireNonNull(beanType);
+    this.beanDesc = classDesc(beanType);
+  }
+
+  private static ClassDesc classDesc(Class<?> type) {
+    return type.describeConstable().orElseThrow(() -> new IllegalStateException("no descriptor for " + type.getName()));
+  }
+
+  private static MethodTypeDesc methodTypeDesc(MethodType methodType) {
+    return methodType.describeConstable().orElseThrow(() -> new IllegalStateException("no descriptor for " + methodType));
+  }
+
+  private DynamicConstantDesc<Object> classDataConstant(Object value, ClassDesc type) {
+    var index = classData.size();
+    classData.add(value);
+    return DynamicConstantDesc.ofNamed(ConstantDescs.BSM_CLASS_DATA_AT, ConstantDescs.DEFAULT_NAME, type, index);
+  }
+
+  private static void appendChar(CodeBuilder code, char c) {
+    // appendable.append(c);
+    code.aload(APPENDABLE_SLOT)
+        .bipush(c)
+        .invokeinterface(CD_APPENDABLE, "append", MethodTypeDesc.of(CD_APPENDABLE, CD_char))
+        .pop();
+  }
+
+  private void callGetter(CodeBuilder code, Method getter) {
+    // bean.getter()
+    code.aload(BEAN_SLOT)
+        .invokevirtual(beanDesc, getter.getName(), methodTypeDesc(MethodType.methodType(getter.getReturnType())));
+  }
+
+  private static void writePrefix(CodeBuilder code, DynamicConstantDesc<?> prefix, DynamicConstantDesc<?> asciiPrefix) {
+    // JSONWriter.writePrefix(writer, prefix, asciiPrefix, appendable);
+    code.aload(WRITER_SLOT)
+        .ldc(prefix)
+        .ldc(asciiPrefix)
+        .aload(APPENDABLE_SLOT)
+        .invokestatic(CD_WRITER, "writePrefix", MethodTypeDesc.of(CD_void, CD_WRITER, CD_PREFIX, CD_PREFIX, CD_APPENDABLE));
+  }
+
+  /**
+   * Writes a property by calling {@code JSONWriter.toJSON(Object, Appendable)} on its value,
+   * the value is boxed if the getter returns a primitive type.
+   */
+  void property(Method getter, Object prefix, Object asciiPrefix) {
+    var prefixDesc = classDataConstant(prefix, CD_PREFIX);
+    var asciiPrefixDesc = classDataConstant(asciiPrefix, CD_PREFIX);
+    var type = getter.getReturnType();
+    properties.add(code -> {
+      writePrefix(code, prefixDesc, asciiPrefixDesc);
+      // writer.toJSON(bean.getter(), appendable);
+      code.aload(WRITER_SLOT);
+      callGetter(code, getter);
+      if (type.isPrimitive()) {
+        var wrapper = MethodType.methodType(type).wrap().returnType();
+        code.invokestatic(classDesc(wrapper), "valueOf", methodTypeDesc(MethodType.methodType(wrapper, type)));
+      }
+      code.aload(APPENDABLE_SLOT)
+          .invokevirtual(CD_WRITER, "toJSON", MethodTypeDesc.of(CD_void, CD_Object, CD_APPENDABLE));
+    });
+  }
+
+  /**
+   * Writes a property of primitive type (int, long, float, double or boolean) without boxing,
+   * byte and short are written as int.
+   */
+  void primitiveProperty(Method getter, Object prefix, Object asciiPrefix) {
+    var type = getter.getReturnType();
+    var helperType = type == byte.class || type == short.class ? int.class : type;
+    var helperName = switch (helperType.getName()) {
+      case "int" -> "writeInt";
+      case "long" -> "writeLong";
+      case "float" -> "writeFloat";
+      case "double" -> "writeDouble";
+      case "boolean" -> "writeBoolean";
+      default -> throw new IllegalArgumentException("not supported " + type);
+    };
+    var prefixDesc = classDataConstant(prefix, CD_PREFIX);
+    var asciiPrefixDesc = classDataConstant(asciiPrefix, CD_PREFIX);
+    properties.add(code -> {
+      writePrefix(code, prefixDesc, asciiPrefixDesc);
+      // JSONWriter.writeXXX(appendable, bean.getter());
+      code.aload(APPENDABLE_SLOT);
+      callGetter(code, getter);
+      code.invokestatic(CD_WRITER, helperName,
+          methodTypeDesc(MethodType.methodType(void.class, Appendable.class, helperType)));
+    });
+  }
+
+  /**
+   * Writes a property by calling directly the generator of its value,
+   * the type of the property has to be a final class.
+   */
+  void nestedProperty(Method getter, Object prefix, Object asciiPrefix, Object generator) {
+    var prefixDesc = classDataConstant(prefix, CD_PREFIX);
+    var asciiPrefixDesc = classDataConstant(asciiPrefix, CD_PREFIX);
+    var generatorDesc = classDataConstant(generator, CD_GENERATOR);
+    properties.add(code -> {
+      writePrefix(code, prefixDesc, asciiPrefixDesc);
+      // JSONWriter.writeNested(generator, writer, bean.getter(), appendable);
+      code.ldc(generatorDesc)
+          .aload(WRITER_SLOT);
+      callGetter(code, getter);
+      code.aload(APPENDABLE_SLOT)
+          .invokestatic(CD_WRITER, "writeNested",
+              MethodTypeDesc.of(CD_void, CD_GENERATOR, CD_WRITER, CD_Object, CD_APPENDABLE));
+    });
+  }
+
+  private void generate(CodeBuilder code) {
+    // var bean = (BeanType) object; appendable.append('{');
+    code.aload(OBJECT_SLOT)
+        .checkcast(beanDesc)
+        .astore(BEAN_SLOT);
+    appendChar(code, '{');
+    for (var property : properties) {
+      property.accept(code);
+    }
+    appendChar(code, '}');
+    code.return_();
+  }
+
+  /**
+   * Ends the generation, defines the hidden class and returns an instance of it.
+   *
+   * @param lookup the lookup of JSONWriter.
+   * @return an instance of the generated class.
+   */
+  Object define(MethodHandles.Lookup lookup) {
+    var thisClass = CD_WRITER.nested("Serializer$" + beanType.getName().replace('.', '_'));
+    var bytes = ClassFile.of().build(thisClass, classBuilder -> classBuilder
+        .withFlags(ClassFile.ACC_PUBLIC | ClassFile.ACC_FINAL | ClassFile.ACC_SUPER)
+        .withSuperclass(CD_Object)
+        .withInterfaceSymbols(CD_GENERATOR)
+        // public <init>() { super(); }
+        .withMethodBody(ConstantDescs.INIT_NAME, ConstantDescs.MTD_void, ClassFile.ACC_PUBLIC, code -> code
+            .aload(0)
+            .invokespecial(CD_Object, ConstantDescs.INIT_NAME, ConstantDescs.MTD_void)
+            .return_())
+        // public void generate(JSONWriter writer, Object bean, Appendable appendable)
+        .withMethodBody("generate", MethodTypeDesc.of(CD_void, CD_WRITER, CD_Object, CD_APPENDABLE),
+            ClassFile.ACC_PUBLIC, this::generate));
+    try {
+      var hiddenLookup = lookup.defineHiddenClassWithClassData(bytes, List.copyOf(classData), true,
+          MethodHandles.Lookup.ClassOption.NESTMATE);
+      return hiddenLookup.findConstructor(hiddenLookup.lookupClass(), MethodType.methodType(void.class)).invoke();
+    } catch (RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable e) {
+      throw new AssertionError(e);
+    }
+  }
+}
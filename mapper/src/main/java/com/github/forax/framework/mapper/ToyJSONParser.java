@@ -1,19 +1,26 @@
 package com.github.forax.framework.mapper;
 
-import static java.lang.Double.parseDouble;
-import static java.lang.Integer.parseInt;
-import static java.util.regex.Pattern.compile;
-import static java.util.stream.Collectors.joining;
-import static java.util.stream.IntStream.rangeClosed;
-import static com.github.forax.framework.mapper.ToyJSONParser.Kind.*;
+import com.github.forax.framework.mapper.JSONPullParser.Token;
 
-import java.util.Arrays;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.lang.foreign.MemorySegment;
+import java.util.Objects;
 
 /**
- * A Toy JSON parser that do not recognize correctly, unicode characters, escaped strings
- * and i'm sure many more features.
+ * A JSON parser that reads the JSON text in a single pass and calls the methods of a {@link JSONVisitor},
+ * the tokens are read using a {@link JSONPullParser}.
+ *
+ * The strings can contain escaped characters (including unicode escapes {@code \}{@code uXXXX}),
+ * the numbers can be negative and have a fraction and/or an exponent.
+ * An integer is reported as an {@link Integer} if it fits in 32 bits,
+ * as a {@link Long} if it fits in 64 bits and as a {@link Double} otherwise;
+ * a number with a fraction or an exponent is reported as a {@link Double}.
+ * The numbers are parsed directly from the buffer of the lexer, so a visitor that overrides
+ * {@link JSONVisitor#valueInt(String, int)}, {@link JSONVisitor#valueLong(String, long)} and
+ * {@link JSONVisitor#valueDouble(String, double)} receives them without any allocation.
  *
  * @see #parse(String, JSONVisitor)
  */
@@ -22,63 +29,6 @@ class ToyJSONParser {
     throw new AssertionError();
   }
 
-  enum Kind {
-    NULL("(null)"),
-    TRUE("(true)"),
-    FALSE("(false)"),
-    DOUBLE("([0-9]*\\.[0-9]*)"),
-    INTEGER("([0-9]+)"),
-    STRING("\"([^\\\"]*)\""),
-    LEFT_CURLY("(\\{)"),
-    RIGHT_CURLY("(\\})"),
-    LEFT_BRACKET("(\\[)"),
-    RIGHT_BRACKET("(\\])"),
-    COLON("(\\:)"),
-    COMMA("(\\,)"),
-    BLANK("([ \t]+)")
-    ;
-
-    private final String regex;
-
-    Kind(String regex) {
-      this.regex = regex;
-    }
-
-    private static final Kind[] VALUES = values();
-  }
-
-  private record Token(Kind kind, String text, int location) {
-    private boolean is(Kind kind) {
-      return this.kind == kind;
-    }
-
-    private String expect(Kind kind) {
-      if (this.kind != kind) {
-        throw error(kind);
-      }
-      return text;
-    }
-
-    public IllegalStateException error(Kind... expectedKinds) {
-      return new IllegalStateException("expect " + Arrays.stream(expectedKinds).map(Kind::name).collect(joining(", ")) + " but recognized " + kind + " at " + location);
-    }
-  }
-
-  private record Lexer(Matcher matcher) {
-    private Token next() {
-      for(;;) {
-        if (!matcher.find()) {
-          throw new IllegalStateException("no token recognized");
-        }
-        var index = rangeClosed(1, matcher.groupCount()).filter(i -> matcher.group(i) != null).findFirst().orElseThrow();
-        var kind = Kind.VALUES[index - 1];
-        if (kind != Kind.BLANK) {
-          return new Token(kind, matcher.group(index), matcher.start(index));
-        }
-      }
-    }
-  }
-
   /**
    * Methods called when a JSON text is parsed.
    * @see #parse(String, JSONVisitor)
@@ -92,6 +42,40 @@ class ToyJSONParser {
      */
     void value(String key, Object value);
 
+    /**
+     * Called during the parsing for an integer that fits in 32 bits.
+     * By default, calls {@link #value(String, Object)} with the value boxed.
+     *
+     * @param key the key of the value if inside an object, {@code null} otherwise.
+     * @param value the value
+     */
+    default void valueInt(String key, int value) {
+      value(key, value);
+    }
+
+    /**
+     * Called during the parsing for an integer that fits in 64 bits but not in 32 bits.
+     * By default, calls {@link #value(String, Object)} with the value boxed.
+     *
+     * @param key the key of the value if inside an object, {@code null} otherwise.
+     * @param value the value
+     */
+    default void valueLong(String key, long value) {
+      value(key, value);
+    }
+
+    /**
+     * Called during the parsing for a number with a fraction or an exponent
+     * or an integer that does not fit in 64 bits.
+     * By default, calls {@link #value(String, Object)} with the value boxed.
+     *
+     * @param key the key of the value if inside an object, {@code null} otherwise.
+     * @param value the value
+     */
+    default void valueDouble(String key, double value) {
+      value(key, value);
+    }
+
     /**
      * Called during the parsing at the beginning of an object.
      * @param key the key of the value if inside an object, {@code null} otherwise.
@@ -125,8 +109,6 @@ class ToyJSONParser {
     void endArray(String key);
   }
 
-  private static final Pattern PATTERN = compile(Arrays.stream(Kind.VALUES).map(k -> k.regex).collect(joining("|")));
-
   /**
    * Parse a JSON text and calls the visitor methods when an array, an object or a value is parsed.
    *
@@ -134,85 +116,106 @@ class ToyJSONParser {
    * @param visitor the visitor to call when parsing the JSON text
    */
   public static void parse(String input, JSONVisitor visitor) {
-    var lexer = new Lexer(PATTERN.matcher(input));
+    var parser = new JSONPullParser(input);
     try {
-      parse(lexer, visitor);
+      parse(parser, visitor);
     } catch(IllegalStateException e) {
       throw new IllegalStateException(e.getMessage() + "\n while parsing " + input, e);
     }
   }
 
-  private static void parse(Lexer lexer, JSONVisitor visitor) {
-    var token = lexer.next();
-    switch(token.kind) {
-      case LEFT_CURLY -> {
-        visitor.startObject(null);
-        parseObject(null, lexer, visitor);
-      }
-      case LEFT_BRACKET -> {
-        visitor.startArray(null);
-        parseArray(null, lexer, visitor);
-      }
-      default -> throw token.error(LEFT_CURLY, LEFT_BRACKET);
-    }
+  /**
+   * Parse a JSON text read from a reader and calls the visitor methods when an array, an object or a value is parsed.
+   * The characters are read using a fixed size buffer so the whole text is never in memory,
+   * the visitor methods are called as soon as the corresponding tokens are read.
+   *
+   * @param reader a reader containing a JSON text, the reader is not closed.
+   * @param visitor the visitor to call when parsing the JSON text
+   * @throws IOException if the reader throws an IOException.
+   */
+  public static void parse(Reader reader, JSONVisitor visitor) throws IOException {
+    Objects.requireNonNull(visitor);
+    parseStream(new JSONPullParser(reader), visitor);
   }
 
-  private static void parseValue(String currentKey, Token token, Lexer lexer, JSONVisitor visitor) {
-    switch (token.kind) {
-      case NULL -> visitor.value(currentKey, null);
-      case FALSE -> visitor.value(currentKey, false);
-      case TRUE -> visitor.value(currentKey, true);
-      case INTEGER -> visitor.value(currentKey, parseInt(token.text));
-      case DOUBLE -> visitor.value(currentKey, parseDouble(token.text));
-      case STRING -> visitor.value(currentKey, token.text);
-      case LEFT_CURLY -> {
-        visitor.startObject(currentKey);
-        parseObject(currentKey, lexer, visitor);
-      }
-      case LEFT_BRACKET -> {
-        visitor.startArray(currentKey);
-        parseArray(currentKey, lexer, visitor);
-      }
-      default -> throw token.error(NULL, FALSE, TRUE, INTEGER, DOUBLE, STRING, LEFT_BRACKET, RIGHT_CURLY);
-    }
+  static void parse(Reader reader, int bufferSize, JSONVisitor visitor) throws IOException {
+    parseStream(new JSONPullParser(reader, bufferSize), visitor);
   }
 
-  private static void parseObject(String currentKey, Lexer lexer, JSONVisitor visitor) {
-    var token = lexer.next();
-    if (token.is(RIGHT_CURLY)) {
-      visitor.endObject(currentKey);
-      return;
-    }
-    for(;;) {
-      var key = token.expect(STRING);
-      lexer.next().expect(COLON);
-      token = lexer.next();
-      parseValue(key, token, lexer, visitor);
-      token = lexer.next();
-      if (token.is(RIGHT_CURLY)) {
-        visitor.endObject(currentKey);
-        return;
-      }
-      token.expect(COMMA);
-      token = lexer.next();
+  /**
+   * Parse a JSON text encoded in UTF-8 read from an input stream and calls the visitor methods
+   * when an array, an object or a value is parsed.
+   *
+   * @param input an input stream containing a JSON text encoded in UTF-8, the input stream is not closed.
+   * @param visitor the visitor to call when parsing the JSON text
+   * @throws IOException if the input stream throws an IOException.
+   *
+   * @see #parse(Reader, JSONVisitor)
+   */
+  public static void parse(InputStream input, JSONVisitor visitor) throws IOException {
+    Objects.requireNonNull(visitor);
+    parseStream(new JSONPullParser(input), visitor);
+  }
+
+  /**
+   * Parse a JSON text encoded in UTF-8 from a memory segment, for example a memory mapped file,
+   * and calls the visitor methods when an array, an object or a value is parsed.
+   * The bytes are decoded by chunks when the corresponding tokens are read,
+   * so the text is never copied as a whole in memory.
+   *
+   * @param segment a memory segment containing a JSON text encoded in UTF-8.
+   * @param visitor the visitor to call when parsing the JSON text
+   *
+   * @see JSONPullParser#JSONPullParser(MemorySegment)
+   */
+  public static void parse(MemorySegment segment, JSONVisitor visitor) {
+    Objects.requireNonNull(visitor);
+    parse(new JSONPullParser(segment), visitor);
+  }
+
+  private static void parseStream(JSONPullParser parser, JSONVisitor visitor) throws IOException {
+    try {
+      parse(parser, visitor);
+    } catch(UncheckedIOException e) {
+      throw e.getCause();
     }
   }
 
-  private static void parseArray(String currentKey, Lexer lexer, JSONVisitor visitor) {
-    var token = lexer.next();
-    if (token.is(RIGHT_BRACKET)) {
-      visitor.endArray(currentKey);
-      return;
+  private static void parse(JSONPullParser parser, JSONVisitor visitor) {
+    var token = parser.nextToken();
+    if (token != Token.START_OBJECT && token != Token.START_ARRAY) {
+      throw new IllegalStateException("expect START_OBJECT, START_ARRAY but recognized " + token + " at " + parser.location());
     }
-    for(;;) {
-      parseValue(null, token, lexer, visitor);
-      token = lexer.next();
-      if (token.is(RIGHT_BRACKET)) {
+    parseValue(null, parser, visitor);
+    parser.nextToken();  // check that there is nothing after
+  }
+
+  private static void parseValue(String currentKey, JSONPullParser parser, JSONVisitor visitor) {
+    switch (parser.token()) {
+      case START_OBJECT -> {
+        visitor.startObject(currentKey);
+        String key;
+        while ((key = parser.readKey()) != null) {
+          parser.nextToken();
+          parseValue(key, parser, visitor);
+        }
+        visitor.endObject(currentKey);
+      }
+      case START_ARRAY -> {
+        visitor.startArray(currentKey);
+        while (parser.nextToken() != Token.END_ARRAY) {
+          parseValue(null, parser, visitor);
+        }
         visitor.endArray(currentKey);
-        return;
       }
-      token.expect(COMMA);
-      token = lexer.next();
+      case INTEGER, DOUBLE -> {
+        switch (parser.numberType()) {
+          case INT -> visitor.valueInt(currentKey, parser.intValue());
+          case LONG -> visitor.valueLong(currentKey, parser.longValue());
+          case DOUBLE -> visitor.valueDouble(currentKey, parser.doubleValue());
+        }
+      }
+      default -> visitor.value(currentKey, parser.value());
     }
   }
-}
\ No newline at end of file
+}
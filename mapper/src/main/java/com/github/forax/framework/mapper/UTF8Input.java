@@ -0,0 +1,90 @@
+package com.github.forax.framework.mapper;
+
+import java.io.Reader;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.util.Objects;
+
+/**
+ * A reader that decodes the UTF-8 bytes of a memory segment, for example a memory mapped file,
+ * without copying them, the characters are decoded directly into the array of the caller.
+ *
+ * A malformed sequence of bytes is decoded as the replacement character U+FFFD.
+ */
+final class UTF8Input extends Reader {
+  private static final char REPLACEMENT = '\uFFFD';
+
+  private final MemorySegment segment;
+  private final long limit;
+  private long position;
+  private char pending;  // the low surrogate of a pair that did not fit, 0 otherwise
+
+  UTF8Input(MemorySegment segment) {
+    this.segment = Objects.requireNonNull(segment);
+    this.limit = segment.byteSize();
+  }
+
+  @Override
+  public int read(char[] chars, int offset, int length) {
+    Objects.checkFromIndexSize(offset, length, chars.length);
+    if (length == 0) {
+      return 0;
+    }
+    var segment = this.segment;
+    var limit = this.limit;
+    var position = this.position;
+    var index = offset;
+    var end = offset + length;
+    if (pending != 0) {
+      chars[index++] = pending;
+      pending = 0;
+    }
+    while (index < end && position < limit) {
+      var b = segment.get(ValueLayout.JAVA_BYTE, position);
+      if (b >= 0) {
+        chars[index++] = (char) b;
+        position++;
+        continue;
+      }
+      var b0 = b & 0xFF;
+      var count = b0 >= 0xF0 ? 3 : b0 >= 0xE0 ? 2 : 1;  // number of continuation bytes
+      var codePoint = b0 & (0x3F >> count);
+      var i = 1;
+      for (; i <= count && position + i < limit; i++) {
+        var next = segment.get(ValueLayout.JAVA_BYTE, position + i);
+        if ((next & 0xC0) != 0x80) {
+          break;
+        }
+        codePoint = codePoint << 6 | (next & 0x3F);
+      }
+      if (b0 < 0xC2 || b0 > 0xF4 || i <= count) {
+        // a continuation byte without a leading byte, an invalid leading byte or a truncated sequence
+        chars[index++] = REPLACEMENT;
+        position += b0 < 0xC2 || b0 > 0xF4 ? 1 : i;
+        continue;
+      }
+      position += i;
+      if (count == 2 && (codePoint < 0x800 || Character.isSurrogate((char) codePoint))
+          || count == 3 && (codePoint < 0x10000 || codePoint > Character.MAX_CODE_POINT)) {
+        chars[index++] = REPLACEMENT;  // overlong encoding or not a valid code point
+        continue;
+      }
+      if (count < 3) {
+        chars[index++] = (char) codePoint;
+        continue;
+      }
+      chars[index++] = Character.highSurrogate(codePoint);
+      if (index == end) {
+        pending = Character.lowSurrogate(codePoint);
+        break;
+      }
+      chars[index++] = Character.lowSurrogate(codePoint);
+    }
+    this.position = position;
+    var read = index - offset;
+    return read == 0 ? -1 : read;
+  }
+
+  @Override
+  public void close() {}
+}
@@ -0,0 +1,267 @@
+package com.github.forax.framework.mapper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+/**
+ * An appendable that encodes the characters in UTF-8 either into an output stream
+ * or into a byte buffer that grows if necessary.
+ * If the byte buffer is backed by an array, the bytes are written directly into that array.
+ *
+ * Already encoded bytes, like the property names, can be written using {@link #write(byte[])}.
+ * Unpaired surrogates are encoded as '?' like {@link String#getBytes(java.nio.charset.Charset)} does.
+ */
+final class UTF8Output implements Appendable {
+  private static final int INITIAL_BUFFER_SIZE = 256;
+  private static final int MAX_BUFFER_SIZE = 8_192;
+
+  private OutputStream output;        // null if the bytes are written into a byte buffer
+  private ByteBuffer byteBuffer;      // null if the bytes are written into an output stream
+  private byte[] buffer;
+  private int offset;                 // index in buffer of the byte at index 0 of the byte buffer, if any
+  private int position;
+  private int limit;
+  private char highSurrogate;         // 0 if there is no pending high surrogate
+
+  UTF8Output(OutputStream output) {
+    this.output = Objects.requireNonNull(output);
+    allocateBuffer(INITIAL_BUFFER_SIZE);
+  }
+
+  UTF8Output(ByteBuffer byteBuffer) {
+    this.output = null;
+    this.byteBuffer = Objects.requireNonNull(byteBuffer);
+    if (byteBuffer.hasArray()) {
+      // write directly into the array of the byte buffer
+      mapArray();
+    } else {
+      allocateBuffer(INITIAL_BUFFER_SIZE);
+    }
+  }
+
+  /**
+   * Reuses this output to write into another output stream, the bytes not yet written are discarded
+   * and the buffer is kept unless it grew bigger than the maximum buffer size.
+   * @param output the output stream or {@code null} to only forget the current output stream.
+   */
+  void reset(OutputStream output) {
+    this.output = output;
+    byteBuffer = null;
+    offset = 0;
+    position = 0;
+    highSurrogate = 0;
+    if (buffer.length > MAX_BUFFER_SIZE) {
+      allocateBuffer(MAX_BUFFER_SIZE);
+    } else {
+      limit = buffer.length;
+    }
+  }
+
+  private void allocateBuffer(int capacity) {
+    buffer = new byte[capacity];
+    limit = capacity;
+  }
+
+  private void mapArray() {
+    buffer = byteBuffer.array();
+    offset = byteBuffer.arrayOffset();
+    position = offset + byteBuffer.position();
+    limit = offset + byteBuffer.limit();
+  }
+
+  @Override
+  public UTF8Output append(CharSequence csq) throws IOException {
+    if (csq == null) {
+      return append("null");
+    }
+    return append(csq, 0, csq.length());
+  }
+
+  @Override
+  public UTF8Output append(CharSequence csq, int start, int end) throws IOException {
+    if (csq == null) {
+      return append("null", start, end);
+    }
+    Objects.checkFromToIndex(start, end, csq.length());
+    var buffer = this.buffer;
+    var position = this.position;
+    for (var i = start; i < end; i++) {
+      var c = csq.charAt(i);
+      if (c >= 0x80 || highSurrogate != 0) {
+        this.position = position;
+        encode(c);
+        buffer = this.buffer;
+        position = this.position;
+        continue;
+      }
+      if (position == limit) {
+        this.position = position;
+        overflow(1);
+        buffer = this.buffer;
+        position = this.position;
+      }
+      buffer[position++] = (byte) c;
+    }
+    this.position = position;
+    return this;
+  }
+
+  @Override
+  public UTF8Output append(char c) throws IOException {
+    encode(c);
+    return this;
+  }
+
+  /**
+   * Writes bytes already encoded in UTF-8.
+   * @param bytes the bytes to write.
+   * @throws IOException if the underlying output stream throws an IOException.
+   */
+  void write(byte[] bytes) throws IOException {
+    pendingSurrogate();
+    ensureCapacity(bytes.length);
+    System.arraycopy(bytes, 0, buffer, position, bytes.length);
+    position += bytes.length;
+  }
+
+  /**
+   * Writes the decimal representation of a long, like {@link Long#toString(long)} but without creating a string.
+   * @param value the value to write.
+   * @throws IOException if the underlying output stream throws an IOException.
+   */
+  void writeLong(long value) throws IOException {
+    pendingSurrogate();
+    var negative = value < 0;
+    if (!negative) {
+      value = -value;  // negative values, so Long.MIN_VALUE does not overflow
+    }
+    var digits = 1;
+    for (var v = value; v <= -10; v /= 10) {
+      digits++;
+    }
+    ensureCapacity(negative ? digits + 1 : digits);
+    var buffer = this.buffer;
+    var position = this.position;
+    if (negative) {
+      buffer[position++] = '-';
+    }
+    var end = position + digits;
+    for (var i = end - 1; i >= position; i--) {
+      buffer[i] = (byte) ('0' - value % 10);
+      value /= 10;
+    }
+    this.position = end;
+  }
+
+  /**
+   * Flushes the bytes not yet written.
+   * @return the byte buffer containing the bytes written or {@code null} if this output writes into an output stream.
+   * @throws IOException if the underlying output stream throws an IOException.
+   */
+  ByteBuffer finish() throws IOException {
+    pendingSurrogate();
+    if (byteBuffer != null && byteBuffer.hasArray()) {
+      byteBuffer.position(position - offset);
+    } else {
+      flushBuffer();
+    }
+    return byteBuffer;
+  }
+
+  private void pendingSurrogate() throws IOException {
+    if (highSurrogate != 0) {
+      highSurrogate = 0;
+      writeByte('?');
+    }
+  }
+
+  private void encode(char c) throws IOException {
+    if (highSurrogate != 0) {
+      var high = highSurrogate;
+      highSurrogate = 0;
+      if (Character.isLowSurrogate(c)) {
+        var codePoint = Character.toCodePoint(high, c);
+        ensureCapacity(4);
+        buffer[position++] = (byte) (0xF0 | (codePoint >> 18));
+        buffer[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+        buffer[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+        buffer[position++] = (byte) (0x80 | (codePoint & 0x3F));
+        return;
+      }
+      writeByte('?');
+    }
+    if (c < 0x80) {
+      writeByte(c);
+      return;
+    }
+    if (c < 0x800) {
+      ensureCapacity(2);
+      buffer[position++] = (byte) (0xC0 | (c >> 6));
+      buffer[position++] = (byte) (0x80 | (c & 0x3F));
+      return;
+    }
+    if (Character.isHighSurrogate(c)) {
+      highSurrogate = c;
+      return;
+    }
+    if (Character.isLowSurrogate(c)) {
+      writeByte('?');
+      return;
+    }
+    ensureCapacity(3);
+    buffer[position++] = (byte) (0xE0 | (c >> 12));
+    buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+    buffer[position++] = (byte) (0x80 | (c & 0x3F));
+  }
+
+  private void writeByte(int value) throws IOException {
+    ensureCapacity(1);
+    buffer[position++] = (byte) value;
+  }
+
+  private void ensureCapacity(int length) throws IOException {
+    if (limit - position < length) {
+      overflow(length);
+    }
+  }
+
+  private void overflow(int length) throws IOException {
+    if (byteBuffer != null && byteBuffer.hasArray()) {
+      byteBuffer = grow(byteBuffer, position - offset, length);
+      mapArray();
+      return;
+    }
+    flushBuffer();
+    if (buffer.length < length || buffer.length < MAX_BUFFER_SIZE) {
+      allocateBuffer(Math.max(length, Math.min(buffer.length << 1, MAX_BUFFER_SIZE)));
+    }
+  }
+
+  private void flushBuffer() throws IOException {
+    if (position == 0) {
+      return;
+    }
+    if (output != null) {
+      output.write(buffer, 0, position);
+    } else {
+      if (byteBuffer.remaining() < position) {
+        byteBuffer = grow(byteBuffer, byteBuffer.position(), position);
+      }
+      byteBuffer.put(buffer, 0, position);
+    }
+    position = 0;
+  }
+
+  /**
+   * Returns a bigger byte buffer containing the bytes of {@code byteBuffer} before {@code position}
+   * with at least {@code length} bytes remaining after them.
+   * The position and the limit of {@code byteBuffer}, the byte buffer of the caller, are not changed.
+   */
+  private static ByteBuffer grow(ByteBuffer byteBuffer, int position, int length) {
+    var capacity = Math.max(byteBuffer.capacity() << 1, Math.addExact(position, length));
+    var newByteBuffer = byteBuffer.isDirect() ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+    return newByteBuffer.order(byteBuffer.order()).put(byteBuffer.duplicate().clear().limit(position));
+  }
+}
@@ -3,10 +3,15 @@ package com.github.forax.framework.mapper;
 import java.beans.BeanInfo;
 import java.beans.IntrospectionException;
 import java.beans.Introspector;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.GenericArrayType;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.RecordComponent;
 import java.lang.reflect.Type;
@@ -42,8 +47,70 @@ final class Utils {
     }
   }
 
+  public static MethodHandle unreflect(Method method) {
+    try {
+      return MethodHandles.lookup().unreflect(method);
+    } catch (IllegalAccessException e) {
+      throw (IllegalAccessError) new IllegalAccessError().initCause(e);
+    }
+  }
+
+  public static MethodHandle unreflectConstructor(Constructor<?> constructor) {
+    try {
+      return MethodHandles.lookup().unreflectConstructor(constructor);
+    } catch (IllegalAccessException e) {
+      throw (IllegalAccessError) new IllegalAccessError().initCause(e);
+    }
+  }
+
+  /**
+   * Returns true if the class is visible from the class loader of this package
+   * and accessible from this package, so it can be referenced by a generated class.
+   */
+  public static boolean isAccessible(Class<?> type) {
+    try {
+      if (Class.forName(type.getName(), false, Utils.class.getClassLoader()) != type) {
+        return false;
+      }
+      MethodHandles.lookup().accessClass(type);
+      return true;
+    } catch (ClassNotFoundException | IllegalAccessException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Returns an instance of the functional interface {@code functionalInterface} that calls the getter,
+   * or {@code null} if the class declaring the getter is not accessible or not visible from this class.
+   *
+   * @param getter the getter to call.
+   * @param functionalInterface the functional interface.
+   * @param erasedType the erased type of the abstract method of the functional interface.
+   */
+  public static <F> F getterAsLambda(Method getter, Class<F> functionalInterface, MethodType erasedType) {
+    var declaringClass = getter.getDeclaringClass();
+    if (!isAccessible(declaringClass)) {
+      return null;
+    }
+    var lookup = MethodHandles.lookup();
+    var returnType = erasedType.returnType().isPrimitive() ?
+        getter.getReturnType() : MethodType.methodType(getter.getReturnType()).wrap().returnType();
+    var abstractMethod = Arrays.stream(functionalInterface.getMethods())
+        .filter(method -> Modifier.isAbstract(method.getModifiers()))
+        .findFirst()
+        .orElseThrow();
+    try {
+      var callSite = LambdaMetafactory.metafactory(lookup, abstractMethod.getName(),
+          MethodType.methodType(functionalInterface), erasedType,
+          unreflect(getter), MethodType.methodType(returnType, declaringClass));
+      return functionalInterface.cast(callSite.getTarget().invoke());
+    } catch (Throwable e) {
+      throw new AssertionError(e);
+    }
+  }
+
   @SuppressWarnings("unchecked")   // very wrong but works
-  private static <T extends Throwable> AssertionError rethrow(Throwable cause) throws T {
+  static <T extends Throwable> AssertionError rethrow(Throwable cause) throws T {
     throw (T) cause;
   }
 
@@ -83,7 +150,7 @@ final class Utils {
       case ParameterizedType parameterizedType -> erase(parameterizedType.getRawType());
       case GenericArrayType genericArrayType -> erase(genericArrayType.getGenericComponentType()).arrayType();
       case TypeVariable<?> typeVariable -> erase(typeVariable.getBounds()[0]);
-      case WildcardType wildcardType -> erase(wildcardType.getLowerBounds()[0]);
+      case WildcardType wildcardType -> erase(wildcardType.getUpperBounds()[0]);
       default -> throw new AssertionError("unknown type " + type.getTypeName());
     };
   }
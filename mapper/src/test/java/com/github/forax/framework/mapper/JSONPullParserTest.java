@@ -0,0 +1,650 @@
+package com.github.forax.framework.mapper;
+
+import com.github.forax.framework.mapper.JSONPullParser.NumberType;
+import com.github.forax.framework.mapper.JSONPullParser.Token;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.lang.foreign.MemorySegment;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static com.github.forax.framework.mapper.JSONPullParser.NumberType.INT;
+import static com.github.forax.framework.mapper.JSONPullParser.NumberType.LONG;
+import static com.github.forax.framework.mapper.JSONPullParser.Token.*;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class JSONPullParserTest {
+  private static List<Token> tokens(JSONPullParser parser) {
+    var tokens = new ArrayList<Token>();
+    Token token;
+    while ((token = parser.nextToken()) != END_DOCUMENT) {
+      tokens.add(token);
+    }
+    return tokens;
+  }
+
+  @Test
+  public void nextToken() {
+    var parser = new JSONPullParser("""
+        {"name": "Bob", "age": 23, "height": 1.8, "tags": [true, false, null], "address": {}}
+        """);
+    assertEquals(List.of(
+        START_OBJECT,
+        KEY, STRING,
+        KEY, INTEGER,
+        KEY, DOUBLE,
+        KEY, START_ARRAY, TRUE, FALSE, NULL, END_ARRAY,
+        KEY, START_OBJECT, END_OBJECT,
+        END_OBJECT), tokens(parser));
+  }
+
+  @Test
+  public void nextTokenScalar() {
+    assertAll(
+        () -> assertEquals(List.of(INTEGER), tokens(new JSONPullParser("42"))),
+        () -> assertEquals(List.of(STRING), tokens(new JSONPullParser("\"foo\""))),
+        () -> assertThrows(IllegalStateException.class, () -> tokens(new JSONPullParser(" ")))
+    );
+  }
+
+  @Test
+  public void nextTokenAfterEndDocument() {
+    var parser = new JSONPullParser("[]");
+    assertAll(
+        () -> assertEquals(START_ARRAY, parser.nextToken()),
+        () -> assertEquals(END_ARRAY, parser.nextToken()),
+        () -> assertEquals(END_DOCUMENT, parser.nextToken()),
+        () -> assertEquals(END_DOCUMENT, parser.nextToken()),
+        () -> assertEquals(END_DOCUMENT, parser.token())
+    );
+  }
+
+  @Test
+  public void values() {
+    var parser = new JSONPullParser("""
+        ["foo\\tbar", 42, -12345678912, 1.5e3, true, null]
+        """);
+    parser.nextToken();
+    assertAll(
+        () -> assertEquals("foo\tbar", parser.readString()),
+        () -> assertEquals(42, parser.readInt()),
+        () -> assertEquals(INTEGER, parser.nextToken()),
+        () -> assertEquals(-12_345_678_912L, parser.longValue()),
+        () -> assertEquals(-12_345_678_912.0, parser.doubleValue()),
+        () -> assertEquals(-12_345_678_912L, parser.value()),
+        () -> assertEquals(DOUBLE, parser.nextToken()),
+        () -> assertEquals(1_500.0, parser.doubleValue()),
+        () -> assertEquals(TRUE, parser.nextToken()),
+        () -> assertEquals(true, parser.value()),
+        () -> assertNull(parser.readString()),
+        () -> assertEquals(END_ARRAY, parser.nextToken())
+    );
+  }
+
+  @Test
+  public void valuesWithTheWrongType() {
+    var parser = new JSONPullParser("""
+        ["foo", 12345678912, 1.5, []]
+        """);
+    parser.nextToken();
+    assertAll(
+        () -> assertThrows(IllegalStateException.class, parser::readInt),
+        () -> assertThrows(IllegalStateException.class, parser::readInt),
+        () -> assertThrows(IllegalStateException.class, parser::readString),
+        () -> assertThrows(IllegalStateException.class, parser::readKey),
+        () -> assertEquals(START_ARRAY, parser.nextToken()),
+        () -> assertThrows(IllegalStateException.class, parser::value)
+    );
+  }
+
+  @Test
+  public void numberType() {
+    var parser = new JSONPullParser("""
+        [2147483647, -2147483648, 2147483648, -9223372036854775808, 9223372036854775808, 1.0, 1e2]
+        """);
+    parser.nextToken();
+    var types = new ArrayList<NumberType>();
+    while (parser.nextToken() != END_ARRAY) {
+      types.add(parser.numberType());
+    }
+    assertEquals(List.of(INT, INT, LONG, LONG, NumberType.DOUBLE, NumberType.DOUBLE, NumberType.DOUBLE), types);
+  }
+
+  @Test
+  public void numberTypeNotANumber() {
+    var parser = new JSONPullParser("[\"1\"]");
+    parser.nextToken();
+    parser.nextToken();
+    assertThrows(IllegalStateException.class, parser::numberType);
+  }
+
+  @Test
+  public void integerValues() {
+    var parser = new JSONPullParser("""
+        [9223372036854775807, -9223372036854775808, 9223372036854775808, -0, 123456789012345678901234567890]
+        """);
+    parser.nextToken();
+    assertAll(
+        () -> assertEquals(INTEGER, parser.nextToken()),
+        () -> assertEquals(Long.MAX_VALUE, parser.longValue()),
+        () -> assertEquals(INTEGER, parser.nextToken()),
+        () -> assertEquals(Long.MIN_VALUE, parser.longValue()),
+        () -> assertEquals(INTEGER, parser.nextToken()),
+        () -> assertThrows(IllegalStateException.class, parser::longValue),
+        () -> assertEquals(9_223_372_036_854_775_808.0, parser.doubleValue()),
+        () -> assertEquals(9_223_372_036_854_775_808.0, parser.value()),
+        () -> assertEquals(INTEGER, parser.nextToken()),
+        () -> assertEquals(0, parser.value()),
+        () -> assertEquals(INTEGER, parser.nextToken()),
+        () -> assertEquals(1.2345678901234568E29, parser.value())
+    );
+  }
+
+  @Test
+  public void doubleValues() {
+    var texts = List.of(
+        "0.0", "-0.0", "1.5", "-1.5", "0.1", "0.3", "3.141592653589793", "2.718281828459045",
+        "1e22", "1e23", "1e-22", "1e-23", "9007199254740993", "9007199254740993.0", "123456789012345.6",
+        "1.7976931348623157e308", "4.9e-324", "1e400", "1e-400", "0.000000000000000000000000000001",
+        "100000000000000000000000", "1E+2", "1e-0", "2.2250738585072014E-308",
+        "0.1000000000000000055511151231257827", "123.456e-5", "-9.87654321e7");
+    for (var text : texts) {
+      var parser = new JSONPullParser(text);
+      parser.nextToken();
+      // compare the bits to distinguish 0.0 and -0.0
+      assertEquals(Double.doubleToRawLongBits(Double.parseDouble(text)), Double.doubleToRawLongBits(parser.doubleValue()), text);
+    }
+  }
+
+  @Test
+  public void doubleValuesRandom() {
+    var random = new Random(0);
+    for (var i = 0; i < 10_000; i++) {
+      var text = switch (i % 3) {
+        case 0 -> Double.toString(random.nextDouble());
+        case 1 -> Double.toString(Double.longBitsToDouble(random.nextLong() & 0x7FEF_FFFF_FFFF_FFFFL));
+        default -> random.nextInt(1_000_000) + "." + random.nextInt(1_000) + "e" + (random.nextInt(40) - 20);
+      };
+      var parser = new JSONPullParser(text);
+      parser.nextToken();
+      assertEquals(Double.parseDouble(text), parser.doubleValue(), text);
+    }
+  }
+
+  @Test
+  public void nextDocument() {
+    var parser = new JSONPullParser("""
+        {"a": [1, 2]}
+        
+        "foo"
+          42 []
+        """);
+    var firstTokens = new ArrayList<Token>();
+    while (parser.nextDocument()) {
+      firstTokens.add(parser.token());
+      while (parser.depth() != 0) {
+        parser.nextToken();
+      }
+    }
+    assertAll(
+        () -> assertEquals(List.of(START_OBJECT, STRING, INTEGER, START_ARRAY), firstTokens),
+        () -> assertEquals(END_DOCUMENT, parser.token()),
+        () -> assertFalse(parser.nextDocument())
+    );
+  }
+
+  @Test
+  public void nextDocumentEmpty() {
+    assertAll(
+        () -> assertFalse(new JSONPullParser("").nextDocument()),
+        () -> assertFalse(new JSONPullParser(" \n\n ").nextDocument())
+    );
+  }
+
+  @Test
+  public void nextDocumentInTheMiddleOfAValue() {
+    var parser = new JSONPullParser("{\"a\": 1}\n{}");
+    assertTrue(parser.nextDocument());
+    assertThrows(IllegalStateException.class, parser::nextDocument);
+  }
+
+  @Test
+  public void nextDocumentInvalidTexts() {
+    for (var text : List.of("{}\n]", "1\n,2", "{}\n{")) {
+      assertThrows(IllegalStateException.class, () -> {
+        var parser = new JSONPullParser(text);
+        while (parser.nextDocument()) {
+          while (parser.depth() != 0) {
+            parser.nextToken();
+          }
+        }
+      }, text);
+    }
+  }
+
+  @Test
+  public void readKey() {
+    var parser = new JSONPullParser("""
+        {"name": "Bob", "age": 23}
+        """);
+    assertEquals(START_OBJECT, parser.nextToken());
+    assertAll(
+        () -> assertEquals("name", parser.readKey()),
+        () -> assertEquals("Bob", parser.readString()),
+        () -> assertEquals("age", parser.readKey()),
+        () -> assertEquals(23, parser.readInt()),
+        () -> assertNull(parser.readKey()),
+        () -> assertEquals(END_OBJECT, parser.token())
+    );
+  }
+
+  @Test
+  public void skipValue() {
+    var parser = new JSONPullParser("""
+        {
+          "skip1": {"a": [1, 2, {"b": [[], {}]}], "c": "d"},
+          "name": "Bob",
+          "skip2": [[1], [2, [3]]],
+          "skip3": "foo",
+          "age": 23
+        }
+        """);
+    parser.nextToken();
+    String name = null;
+    var age = 0;
+    String key;
+    while ((key = parser.readKey()) != null) {
+      switch (key) {
+        case "name" -> name = parser.readString();
+        case "age" -> age = parser.readInt();
+        default -> parser.skipValue();
+      }
+    }
+    assertEquals("Bob", name);
+    assertEquals(23, age);
+    assertEquals(END_DOCUMENT, parser.nextToken());
+  }
+
+  @Test
+  public void skipValueAtTheEndOfAnArray() {
+    var parser = new JSONPullParser("[1]");
+    parser.nextToken();
+    parser.skipValue();
+    assertThrows(IllegalStateException.class, parser::skipValue);
+  }
+
+  @Test
+  public void skipValueUnchecked() {
+    var text = """
+        {
+          "skip1": {"a": [1, 2, {"b": [[], {}]}], "c": "d ] } [ { \\" ]"},
+          "name": "Bob",
+          "skip2": [[1], [2, [3]], "\\\\"],
+          "skip3": "foo",
+          "age": 23
+        }
+        """;
+    for (var bufferSize : new int[] { 1, 3, 8_192 }) {
+      var parser = new JSONPullParser(new StringReader(text), bufferSize);
+      parser.nextToken();
+      String name = null;
+      var age = 0;
+      String key;
+      while ((key = parser.readKey()) != null) {
+        switch (key) {
+          case "name" -> name = parser.readString();
+          case "age" -> age = parser.readInt();
+          default -> {
+            parser.skipValueUnchecked();
+            assertEquals(1, parser.depth());
+          }
+        }
+      }
+      assertEquals("Bob", name);
+      assertEquals(23, age);
+      assertEquals(END_DOCUMENT, parser.nextToken());
+    }
+  }
+
+  @Test
+  public void skipValueUncheckedInvalidTexts() {
+    for (var text : List.of("[[1}]", "[{]", "[[1, 2", "[[\"]]", "[]")) {
+      var parser = new JSONPullParser(text);
+      parser.nextToken();
+      assertThrows(IllegalStateException.class, parser::skipValueUnchecked, text);
+    }
+  }
+
+  @Test
+  public void invalidEscapeSequences() {
+    var texts = List.of("[\"\\x\"]", "[\"\\u12\"]", "[\"\\u12", "[\"\\u12G4\"]", "[\"\\u\uFF10\uFF10\uFF14\uFF11\"]", "[\"\\");
+    for (var text : texts) {
+      for (var bufferSize : new int[] { 1, 3, 8_192 }) {
+        assertThrows(IllegalStateException.class, () -> tokens(new JSONPullParser(new StringReader(text), bufferSize)), text);
+      }
+    }
+  }
+
+  @Test
+  public void skipValueInvalidEscapeSequences() {
+    for (var text : List.of("{\"a\": \"\\x\", \"b\": 1}", "{\"a\": [\"\\u12\"], \"b\": 1}", "{\"a\": {\"k\\q\": 0}, \"b\": 1}")) {
+      var parser = new JSONPullParser(text);
+      assertThrows(IllegalStateException.class, () -> {
+        parser.nextToken();
+        while (parser.readKey() != null) {
+          parser.skipValue();
+        }
+      }, text);
+    }
+  }
+
+  @Test
+  public void validEscapeSequences() {
+    var text = "[\"\\\"\\\\\\/\\b\\f\\n\\r\\t\\u00e9\\u00C9\"]";
+    for (var bufferSize : new int[] { 1, 3, 8_192 }) {
+      var parser = new JSONPullParser(new StringReader(text), bufferSize);
+      parser.nextToken();
+      parser.skipValue();
+      assertEquals(END_ARRAY, parser.nextToken());
+    }
+    var parser = new JSONPullParser(text);
+    parser.nextToken();
+    assertEquals("\"\\/\b\f\n\r\t\u00e9\u00C9", parser.readString());
+  }
+
+  @Test
+  public void depth() {
+    var parser = new JSONPullParser("""
+        {"a": [1, {"b": 2}]}
+        """);
+    var depths = new ArrayList<Integer>();
+    while (parser.nextToken() != END_DOCUMENT) {
+      depths.add(parser.depth());
+    }
+    // {  a  [  1  {  b  2  }  ]  }
+    assertEquals(List.of(1, 1, 2, 2, 3, 3, 3, 2, 1, 0), depths);
+  }
+
+  @Test
+  public void location() {
+    var parser = new JSONPullParser("  [ 12,  \"foo\"]");
+    assertAll(
+        () -> assertEquals(START_ARRAY, parser.nextToken()),
+        () -> assertEquals(2, parser.location()),
+        () -> assertEquals(INTEGER, parser.nextToken()),
+        () -> assertEquals(4, parser.location()),
+        () -> assertEquals(STRING, parser.nextToken()),
+        () -> assertEquals(10, parser.location())  // the content of the string
+    );
+  }
+
+  @Test
+  public void invalidTexts() {
+    for (var text : List.of("{", "[1,]", "[1 2]", "{\"a\" 1}", "{1: 2}", "{\"a\": 1,}", "[}", "{]", "[] []", "]")) {
+      assertThrows(IllegalStateException.class, () -> tokens(new JSONPullParser(text)), text);
+    }
+  }
+
+  @Test
+  public void reader() {
+    var text = """
+        {"name": "Bob", "tags": ["a", "b"], "address": {"city": "Paris"}, "age": 23}
+        """;
+    var expected = tokens(new JSONPullParser(text));
+    for (var bufferSize : new int[] { 1, 2, 5, 8_192 }) {
+      assertEquals(expected, tokens(new JSONPullParser(new StringReader(text), bufferSize)));
+    }
+  }
+
+  @Test
+  public void readerSkipValueAndReadString() {
+    var parser = new JSONPullParser(new StringReader("""
+        {"skip": {"a": ["b", "c"]}, "name": "a long name that does not fit in the buffer"}
+        """), 4);
+    parser.nextToken();
+    assertAll(
+        () -> assertEquals("skip", parser.readKey()),
+        () -> parser.skipValue(),
+        () -> assertEquals("name", parser.readKey()),
+        () -> assertEquals("a long name that does not fit in the buffer", parser.readString()),
+        () -> assertNull(parser.readKey())
+    );
+  }
+
+  @Test
+  public void inputStream() {
+    var parser = new JSONPullParser(new ByteArrayInputStream("[\"été\"]".getBytes(StandardCharsets.UTF_8)));
+    parser.nextToken();
+    assertEquals("été", parser.readString());
+  }
+
+  private static List<Object> values(JSONPullParser parser) {
+    var values = new ArrayList<Object>();
+    Token token;
+    while ((token = parser.nextToken()) != END_DOCUMENT) {
+      values.add(switch (token) {
+        case KEY -> "key " + parser.stringValue();
+        case STRING, INTEGER, DOUBLE, TRUE, FALSE, NULL -> String.valueOf(parser.value());
+        default -> token;
+      });
+    }
+    return values;
+  }
+
+  @Test
+  public void memorySegment() {
+    var text = """
+        {"name": "Zoë \uD83D\uDE00", "city": "北京", "escaped": "\\u00e9t\\u00e9", "values": [1, -2.5, true, null]}
+        """;
+    var segment = MemorySegment.ofArray(text.getBytes(StandardCharsets.UTF_8));
+    assertEquals(values(new JSONPullParser(text)), values(new JSONPullParser(segment)));
+  }
+
+  @Test
+  public void memorySegmentLongText() {
+    // the surrogate pairs and the multi-bytes characters are split between two chunks of the buffer
+    var text = IntStream.range(0, 10_000)
+        .mapToObj(i -> "\"" + "a".repeat(i % 7) + "é\uD83D\uDE00北\"")
+        .collect(Collectors.joining(", ", "[", "]"));
+    var segment = MemorySegment.ofArray(text.getBytes(StandardCharsets.UTF_8));
+    assertEquals(values(new JSONPullParser(text)), values(new JSONPullParser(segment)));
+  }
+
+  @Test
+  public void memorySegmentMalformedUTF8() {
+    var bytes = new byte[] { '[', '"', 'a', (byte) 0xFF, 'b', (byte) 0xC3, '"', ',', '"', (byte) 0xE2, (byte) 0x82, (byte) 0xAC, '"', ']' };
+    var parser = new JSONPullParser(MemorySegment.ofArray(bytes));
+    parser.nextToken();
+    assertAll(
+        () -> assertEquals("a\uFFFDb\uFFFD", parser.readString()),
+        () -> assertEquals("€", parser.readString())
+    );
+  }
+
+  @Test
+  public void byteBuffer() {
+    var buffer = ByteBuffer.wrap("garbage{\"name\": \"été\"}garbage".getBytes(StandardCharsets.UTF_8));
+    buffer.position(7).limit(buffer.capacity() - 7);
+    var parser = new JSONPullParser(buffer);
+    parser.nextToken();
+    assertAll(
+        () -> assertEquals("name", parser.readKey()),
+        () -> assertEquals("été", parser.readString()),
+        () -> assertEquals(END_OBJECT, parser.nextToken()),
+        () -> assertEquals(END_DOCUMENT, parser.nextToken()),
+        () -> assertEquals(7, buffer.position())
+    );
+  }
+
+  @Test
+  public void mappedFile(@TempDir Path directory) throws IOException {
+    var path = Files.writeString(directory.resolve("data.json"), """
+        {"skip": {"a": ["b", "c"]}, "name": "北京"}
+        """);
+    try (var channel = FileChannel.open(path)) {
+      var parser = new JSONPullParser(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+      parser.nextToken();
+      assertAll(
+          () -> assertEquals("skip", parser.readKey()),
+          () -> parser.skipValue(),
+          () -> assertEquals("name", parser.readKey()),
+          () -> assertEquals("北京", parser.readString()),
+          () -> assertNull(parser.readKey())
+      );
+    }
+  }
+
+  @Test
+  public void memorySegmentPreconditions() {
+    assertAll(
+        () -> assertThrows(NullPointerException.class, () -> new JSONPullParser((MemorySegment) null)),
+        () -> assertThrows(NullPointerException.class, () -> new JSONPullParser((ByteBuffer) null))
+    );
+  }
+
+  @Test
+  public void readerIOException() {
+    var exception = new IOException("oops");
+    var parser = new JSONPullParser(new Reader() {
+      @Override
+      public int read(char[] buffer, int offset, int length) throws IOException {
+        throw exception;
+      }
+
+      @Override
+      public void close() {}
+    });
+    assertSame(exception, assertThrows(UncheckedIOException.class, parser::nextToken).getCause());
+  }
+
+  @Test
+  public void keyIndex() {
+    var keys = JSONPullParser.Keys.of("name", "age", "address");
+    var parser = new JSONPullParser("""
+        {"age": 23, "unknown": 1, "name": "Bob", "n\\u0061me": "escaped", "address": {}}
+        """);
+    parser.nextToken();
+    var indexes = new ArrayList<Integer>();
+    while (parser.nextKey()) {
+      indexes.add(parser.keyIndex(keys));
+      parser.skipValue();
+    }
+    assertEquals(List.of(1, -1, 0, 0, 2), indexes);
+  }
+
+  @Test
+  public void keyIndexWithCollisions() {
+    // "Aa" and "BB" have the same hash code
+    var keys = JSONPullParser.Keys.of("Aa", "BB", "AaAa", "BBBB", "AaBB");
+    var parser = new JSONPullParser("""
+        {"BBBB": 1, "AaBB": 2, "Aa": 3, "BB": 4, "AaAa": 5, "BBAa": 6}
+        """);
+    parser.nextToken();
+    var indexes = new ArrayList<Integer>();
+    while (parser.nextKey()) {
+      indexes.add(parser.keyIndex(keys));
+      parser.skipValue();
+    }
+    assertEquals(List.of(3, 4, 0, 1, 2, -1), indexes);
+  }
+
+  @Test
+  public void keyIndexNotAKey() {
+    var parser = new JSONPullParser("[\"name\"]");
+    parser.nextToken();
+    parser.nextToken();
+    assertThrows(IllegalStateException.class, () -> parser.keyIndex(JSONPullParser.Keys.of("name")));
+  }
+
+  @Test
+  public void keys() {
+    var keys = JSONPullParser.Keys.of(List.of("foo", "bar"));
+    assertAll(
+        () -> assertEquals(2, keys.size()),
+        () -> assertEquals("bar", keys.get(1)),
+        () -> assertEquals(0, keys.indexOf("foo")),
+        () -> assertEquals(-1, keys.indexOf("baz")),
+        () -> assertEquals(0, JSONPullParser.Keys.of().size()),
+        () -> assertThrows(IllegalArgumentException.class, () -> JSONPullParser.Keys.of("foo", "foo")),
+        () -> assertThrows(NullPointerException.class, () -> JSONPullParser.Keys.of("foo", null))
+    );
+  }
+
+  @Test
+  public void reset() {
+    var parser = new JSONPullParser("  [ 12,  \"foo\"]");
+    parser.nextToken();
+    parser.nextToken();
+    parser.reset("{\"a\": 1}");
+    assertAll(
+        () -> assertNull(parser.token()),
+        () -> assertEquals(START_OBJECT, parser.nextToken()),
+        () -> assertEquals(0, parser.location()),
+        () -> assertEquals("a", parser.readKey()),
+        () -> assertEquals(1, parser.readInt()),
+        () -> assertNull(parser.readKey()),
+        () -> assertEquals(END_DOCUMENT, parser.nextToken())
+    );
+  }
+
+  @Test
+  public void resetInTheMiddleOfAValue() {
+    var parser = new JSONPullParser("[[{\"a\": [1, 2");
+    assertEquals(List.of(START_ARRAY, START_ARRAY, START_OBJECT, KEY, START_ARRAY, INTEGER),
+        IntStream.range(0, 6).mapToObj(i -> parser.nextToken()).toList());
+    parser.reset("[true] ");
+    assertEquals(List.of(START_ARRAY, TRUE, END_ARRAY), tokens(parser));
+  }
+
+  @Test
+  public void resetStringsAndReaders() {
+    var text = """
+        {"name": "Bob", "tags": ["a", "b"], "address": {"city": "Paris"}, "age": 23}
+        """;
+    var hugeText = "[" + IntStream.range(0, 100_000).mapToObj(i -> "\"" + i + "\"").collect(Collectors.joining(", ")) + "]";
+    var hugeString = "\"" + "x".repeat(100_000) + "\"";
+    var expected = tokens(new JSONPullParser(text));
+    var parser = new JSONPullParser(new StringReader(text), 1);
+    for (var input : List.of(text, hugeText, hugeString, text)) {
+      parser.reset(input);
+      assertEquals(tokens(new JSONPullParser(input)), tokens(parser));
+      parser.reset(new StringReader(input));
+      assertEquals(tokens(new JSONPullParser(input)), tokens(parser));
+    }
+    parser.reset("");
+    assertThrows(IllegalStateException.class, parser::nextToken);
+    parser.reset(new StringReader(text));
+    assertEquals(expected, tokens(parser));
+    parser.reset(hugeString);
+    assertEquals("x".repeat(100_000), parser.readString());
+  }
+
+  @Test
+  public void resetPreconditions() {
+    var parser = new JSONPullParser("");
+    assertAll(
+        () -> assertThrows(NullPointerException.class, () -> parser.reset((String) null)),
+        () -> assertThrows(NullPointerException.class, () -> parser.reset((Reader) null))
+    );
+  }
+}
@@ -3,17 +3,32 @@ package com.github.forax.framework.mapper;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
-
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.StringJoiner;
+import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertInstanceOf;
@@ -23,7 +38,9 @@ import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class JSONReaderTest {
-  /*
+  // used by the tests of several questions
+  public record Point(@JSONProperty("x-coordinate") int x, @JSONProperty("y-coordinate") int y, String label) {}
+
   @Nested
   public class Q1 {
 
@@ -213,6 +230,7 @@ public class JSONReaderTest {
   }  // end of Q2
 
 
+  /*
   @Nested
   public class Q3 {
 
@@ -559,4 +577,720 @@ public class JSONReaderTest {
 
   }  // end of Q7
   */
+
+
+  @Nested
+  public class Q8 {
+
+    @SuppressWarnings("unused")
+    public static class Company {
+      private String name;
+      private List<Employee> employees;
+      private Q2.Person ceo;
+
+      public void setName(String name) {
+        this.name = name;
+      }
+      public void setEmployees(List<Employee> employees) {
+        this.employees = employees;
+      }
+      public void setCeo(Q2.Person ceo) {
+        this.ceo = ceo;
+      }
+    }
+
+    public record Employee(String name, long id, double salary, boolean manager, List<String> tags, Q2.Address address) {}
+
+    @Test @Tag("Q8")
+    public void parseJSONNestedBeansRecordsAndLists() {
+      var reader = new JSONReader();
+      var company = reader.parseJSON("""
+        {
+          "name": "ACME",
+          "employees": [
+            { "name": "Bob", "id": 12345678912, "salary": 1000, "manager": true, "tags": ["a", "b"], "address": { "zipCode": "75001" } },
+            { "name": "Ana", "id": 2, "salary": 2.5e3, "manager": false, "tags": [], "address": null }
+          ],
+          "ceo": { "address": { "zipCode": "13001" } }
+        }
+        """, Company.class);
+      assertAll(
+          () -> assertEquals("ACME", company.name),
+          () -> assertEquals(2, company.employees.size()),
+          () -> assertEquals("Bob", company.employees.get(0).name()),
+          () -> assertEquals(12_345_678_912L, company.employees.get(0).id()),
+          () -> assertEquals(1_000.0, company.employees.get(0).salary()),
+          () -> assertTrue(company.employees.get(0).manager()),
+          () -> assertEquals(List.of("a", "b"), company.employees.get(0).tags()),
+          () -> assertEquals("75001", company.employees.get(0).address().zipCode),
+          () -> assertEquals(new Employee("Ana", 2, 2_500.0, false, List.of(), null), company.employees.get(1)),
+          () -> assertEquals("13001", company.ceo.address.zipCode),
+          () -> assertThrows(UnsupportedOperationException.class, () -> company.employees.add(null))
+      );
+    }
+
+    @SuppressWarnings("unused")
+    public static class AnyBean {
+      private Object any;
+      private int[] values;
+
+      public void setAny(Object any) {
+        this.any = any;
+      }
+      public void setValues(int[] values) {
+        this.values = values;
+      }
+    }
+
+    @Test @Tag("Q8")
+    public void parseJSONObjectAndArray() {
+      var reader = new JSONReader();
+      var bean = reader.parseJSON("""
+        {
+          "any": { "foo": [1, "bar", null, { "baz": true }] },
+          "values": [3, 4, 5]
+        }
+        """, AnyBean.class);
+      var list = new ArrayList<>();
+      list.add(1);
+      list.add("bar");
+      list.add(null);
+      list.add(Map.of("baz", true));
+      assertAll(
+          () -> assertEquals(Map.of("foo", list), bean.any),
+          () -> assertArrayEquals(new int[] { 3, 4, 5 }, bean.values)
+      );
+    }
+
+    @Test @Tag("Q8")
+    public void parseJSONTypeMismatch() {
+      var reader = new JSONReader();
+      assertAll(
+          () -> assertThrows(IllegalStateException.class, () -> reader.parseJSON("""
+              { "name": 3 }
+              """, Company.class)),
+          () -> assertThrows(IllegalStateException.class, () -> reader.parseJSON("""
+              { "employees": {} }
+              """, Company.class)),
+          () -> assertThrows(IllegalStateException.class, () -> reader.parseJSON("""
+              { "values": [1.5] }
+              """, AnyBean.class)),
+          () -> assertThrows(IllegalStateException.class, () -> reader.parseJSON("""
+              { "values": [null] }
+              """, AnyBean.class))
+      );
+    }
+
+    @Test @Tag("Q8")
+    public void readJSON() throws IOException {
+      var reader = new JSONReader();
+      var person = reader.readJSON(new StringReader("""
+        {
+          "address": {
+            "zipCode": "75001"
+          }
+        }
+        """), Q2.Person.class);
+      assertEquals("75001", person.address.zipCode);
+    }
+
+    @Test @Tag("Q8")
+    public void readJSONPreconditions() {
+      var reader = new JSONReader();
+      assertAll(
+          () -> assertThrows(NullPointerException.class, () -> reader.readJSON(null, Q2.Person.class)),
+          () -> assertThrows(NullPointerException.class, () -> reader.readJSON(new StringReader("{}"), null))
+      );
+    }
+
+    public enum Color { RED, GREEN }
+
+    public record Pixel(Color color, char letter, short depth, byte alpha, Set<String> tags, Character mark, char[] code) {}
+
+    @Test @Tag("Q8")
+    public void parseJSONTypesWrittenByJSONWriter() {
+      var reader = new JSONReader();
+      var pixel = reader.parseJSON("""
+          { "color": "GREEN", "letter": "x", "depth": -300, "alpha": 127, "tags": ["b", "a", "b"], "mark": "!", "code": "abc" }
+          """, Pixel.class);
+      assertAll(
+          () -> assertEquals(Color.GREEN, pixel.color()),
+          () -> assertEquals('x', pixel.letter()),
+          () -> assertEquals((short) -300, pixel.depth()),
+          () -> assertEquals((byte) 127, pixel.alpha()),
+          () -> assertEquals(List.of("b", "a"), List.copyOf(pixel.tags())),
+          () -> assertThrows(UnsupportedOperationException.class, () -> pixel.tags().add("c")),
+          () -> assertEquals('!', pixel.mark()),
+          () -> assertArrayEquals(new char[] { 'a', 'b', 'c' }, pixel.code())
+      );
+    }
+
+    @Test @Tag("Q8")
+    public void parseJSONTypesWrittenByJSONWriterInvalid() {
+      var reader = new JSONReader();
+      assertAll(
+          () -> assertThrows(IllegalStateException.class, () -> reader.parseJSON("{ \"color\": \"BLUE\" }", Pixel.class)),
+          () -> assertThrows(IllegalStateException.class, () -> reader.parseJSON("{ \"letter\": \"xy\" }", Pixel.class)),
+          () -> assertThrows(IllegalStateException.class, () -> reader.parseJSON("{ \"depth\": 32768 }", Pixel.class)),
+          () -> assertThrows(IllegalStateException.class, () -> reader.parseJSON("{ \"alpha\": 128 }", Pixel.class)),
+          () -> assertThrows(IllegalStateException.class, () -> reader.parseJSON("{ \"alpha\": 1.5 }", Pixel.class))
+      );
+    }
+
+    @SuppressWarnings("unused")
+    public static class CounterBean {
+      private int count;
+
+      public int getCount() {
+        return count;
+      }
+      public void setCount(int count) {
+        this.count = count;
+      }
+      public int getDoubled() {
+        return 2 * count;
+      }
+      @JSONProperty("is-positive")
+      public boolean isPositive() {
+        return count > 0;
+      }
+    }
+
+    @Test @Tag("Q8")
+    public void parseJSONBeanWithGetterOnlyProperties() {
+      var reader = new JSONReader();
+      var bean = reader.parseJSON("""
+          { "count": 3, "doubled": 6, "is-positive": true }
+          """, CounterBean.class);
+      assertAll(
+          () -> assertEquals(3, bean.count),
+          () -> assertThrows(IllegalStateException.class, () -> reader.parseJSON("""
+              { "count": 3, "tripled": 9 }
+              """, CounterBean.class))
+      );
+    }
+
+    @Test @Tag("Q8")
+    public void parseJSONRoundTrip() {
+      var writer = new JSONWriter();
+      var reader = new JSONReader();
+      var pixel = new Pixel(Color.RED, '\n', (short) 12, (byte) -1, Set.of("tag"), null, new char[] { 'z' });
+      var counter = new CounterBean();
+      counter.setCount(7);
+      var pixel2 = reader.parseJSON(writer.toJSON(pixel), Pixel.class);
+      assertAll(
+          () -> assertEquals(pixel.color(), pixel2.color()),
+          () -> assertEquals(pixel.letter(), pixel2.letter()),
+          () -> assertEquals(pixel.depth(), pixel2.depth()),
+          () -> assertEquals(pixel.alpha(), pixel2.alpha()),
+          () -> assertEquals(pixel.tags(), pixel2.tags()),
+          () -> assertNull(pixel2.mark()),
+          () -> assertArrayEquals(pixel.code(), pixel2.code()),
+          () -> assertEquals(7, reader.parseJSON(writer.toJSON(counter), CounterBean.class).count)
+      );
+    }
+
+
+  }  // end of Q8
+
+
+  @Nested
+  public class Q9 {
+
+    @Test @Tag("Q9")
+    public void parseJSONRecordWithJSONProperty() {
+      var reader = new JSONReader();
+      var point = reader.parseJSON("""
+        { "y-coordinate": 2, "label": "p", "x-coordinate": 1 }
+        """, Point.class);
+      assertEquals(new Point(1, 2, "p"), point);
+    }
+
+    @Test @Tag("Q9")
+    public void parseJSONRecordWithJSONPropertyUnknownKey() {
+      var reader = new JSONReader();
+      assertThrows(IllegalStateException.class, () -> reader.parseJSON("""
+        { "x": 1 }
+        """, Point.class));
+    }
+
+    @Test @Tag("Q9")
+    public void parseJSONRecordMissingComponents() {
+      var reader = new JSONReader();
+      assertAll(
+          () -> assertEquals(new Point(0, 3, null), reader.parseJSON("""
+              { "y-coordinate": 3 }
+              """, Point.class)),
+          () -> assertEquals(new Point(0, 0, null), reader.parseJSON("{}", Point.class)),
+          () -> assertEquals(new Q8.Employee(null, 0, 0.0, false, null, null), reader.parseJSON("{}", Q8.Employee.class))
+      );
+    }
+
+    @Test @Tag("Q9")
+    public void parseJSONRecordWrittenByJSONWriter() {
+      var writer = new JSONWriter();
+      var reader = new JSONReader();
+      var point = new Point(-4, 7, "a \"label\"");
+      assertEquals(point, reader.parseJSON(writer.toJSON(point), Point.class));
+    }
+
+    @SuppressWarnings("unused")
+    public static class RenamedBean {
+      private String firstName;
+
+      @JSONProperty("first-name")
+      public String getFirstName() {
+        return firstName;
+      }
+      public void setFirstName(String firstName) {
+        this.firstName = firstName;
+      }
+    }
+
+    @Test @Tag("Q9")
+    public void parseJSONBeanWithJSONProperty() {
+      var reader = new JSONReader();
+      var bean = reader.parseJSON("""
+        { "first-name": "Bob" }
+        """, RenamedBean.class);
+      assertEquals("Bob", bean.firstName);
+    }
+
+  }  // end of Q9
+
+
+  @Nested
+  public class Q10 {
+
+    public static class NumericBean {
+      private int count;
+      private long total;
+      private double average;
+      private boolean valid;
+      private long[] ids;
+      private double[] values;
+
+      public void setCount(int count) {
+        this.count = count;
+      }
+      public void setTotal(long total) {
+        this.total = total;
+      }
+      public void setAverage(double average) {
+        this.average = average;
+      }
+      public void setValid(boolean valid) {
+        this.valid = valid;
+      }
+      public void setIds(long[] ids) {
+        this.ids = ids;
+      }
+      public void setValues(double[] values) {
+        this.values = values;
+      }
+    }
+
+    @Test @Tag("Q10")
+    public void parseJSONPrimitivesAndPrimitiveArrays() {
+      var reader = new JSONReader();
+      var bean = reader.parseJSON("""
+          {
+            "count": 3, "total": 12345678912, "average": 2, "valid": true,
+            "ids": [1, 9223372036854775807, -3], "values": [0.5, 1, -2.5e-3]
+          }
+          """, NumericBean.class);
+      assertAll(
+          () -> assertEquals(3, bean.count),
+          () -> assertEquals(12_345_678_912L, bean.total),
+          () -> assertEquals(2.0, bean.average),
+          () -> assertTrue(bean.valid),
+          () -> assertArrayEquals(new long[] { 1, Long.MAX_VALUE, -3 }, bean.ids),
+          () -> assertArrayEquals(new double[] { 0.5, 1.0, -2.5e-3 }, bean.values)
+      );
+    }
+
+    @Test @Tag("Q10")
+    public void parseJSONPrimitivesTypeMismatch() {
+      var reader = new JSONReader();
+      assertAll(
+          () -> assertThrows(IllegalStateException.class, () -> reader.parseJSON("""
+              { "count": 1.5 }
+              """, NumericBean.class)),
+          () -> assertThrows(IllegalStateException.class, () -> reader.parseJSON("""
+              { "total": "1" }
+              """, NumericBean.class)),
+          () -> assertThrows(IllegalStateException.class, () -> reader.parseJSON("""
+              { "average": null }
+              """, NumericBean.class)),
+          () -> assertThrows(IllegalStateException.class, () -> reader.parseJSON("""
+              { "valid": 1 }
+              """, NumericBean.class)),
+          () -> assertThrows(IllegalStateException.class, () -> reader.parseJSON("""
+              { "ids": [1, 18446744073709551616] }
+              """, NumericBean.class))
+      );
+    }
+
+  }  // end of Q10
+
+
+  @Nested
+  public class Q11 {
+
+    @Test @Tag("Q11")
+    public void parseJSONTypeReferenceListOfRecords() {
+      var reader = new JSONReader();
+      var points = reader.parseJSON("""
+        [ { "x-coordinate": 1, "y-coordinate": 2 }, { "label": "origin" } ]
+        """, new JSONReader.TypeReference<List<Point>>() {});
+      assertEquals(List.of(new Point(1, 2, null), new Point(0, 0, "origin")), points);
+    }
+
+    @Test @Tag("Q11")
+    public void parseJSONTypeReferenceMapOfArrays() {
+      var reader = new JSONReader();
+      var map = reader.parseJSON("""
+        { "primes": [2, 3, 5], "empty": [], "none": null }
+        """, new JSONReader.TypeReference<Map<String, int[]>>() {});
+      assertAll(
+          () -> assertEquals(List.of("primes", "empty", "none"), List.copyOf(map.keySet())),
+          () -> assertArrayEquals(new int[] { 2, 3, 5 }, map.get("primes")),
+          () -> assertArrayEquals(new int[0], map.get("empty")),
+          () -> assertNull(map.get("none"))
+      );
+    }
+
+    @Test @Tag("Q11")
+    public void parseJSONTypeReferenceNested() {
+      var reader = new JSONReader();
+      var value = reader.parseJSON("""
+        { "a": [ [ { "x-coordinate": 1 } ] ], "b": [] }
+        """, new JSONReader.TypeReference<Map<String, ? extends List<Point[]>>>() {});
+      assertAll(
+          () -> assertArrayEquals(new Point[] { new Point(1, 0, null) }, value.get("a").get(0)),
+          () -> assertEquals(List.of(), value.get("b"))
+      );
+    }
+
+    @Test @Tag("Q11")
+    public void parseJSONTypeReferenceMismatch() {
+      var reader = new JSONReader();
+      assertAll(
+          () -> assertThrows(IllegalStateException.class, () -> reader.parseJSON("""
+              { "a": "b" }
+              """, new JSONReader.TypeReference<Map<String, Integer>>() {})),
+          () -> assertThrows(IllegalStateException.class, () -> reader.parseJSON("""
+              [ "a" ]
+              """, new JSONReader.TypeReference<List<Point>>() {})),
+          () -> assertThrows(IllegalStateException.class, () -> reader.parseJSON("""
+              { "1": "a" }
+              """, new JSONReader.TypeReference<Map<Integer, String>>() {}))
+      );
+    }
+
+    @SuppressWarnings("rawtypes")
+    private static final class RawTypeReference implements JSONReader.TypeReference {}
+
+    @Test @Tag("Q11")
+    @SuppressWarnings("unchecked")
+    public void parseJSONTypeReferencePreconditions() {
+      var reader = new JSONReader();
+      assertAll(
+          () -> assertThrows(NullPointerException.class, () -> reader.parseJSON(null, new JSONReader.TypeReference<String>() {})),
+          () -> assertThrows(NullPointerException.class, () -> reader.parseJSON("", (JSONReader.TypeReference<?>) null)),
+          () -> assertThrows(IllegalArgumentException.class, () -> reader.parseJSON("[]", new RawTypeReference()))
+      );
+    }
+
+    @SuppressWarnings("unused")
+    public static class PointsBean {
+      private List<Point> points;
+
+      public void setPoints(List<Point> points) {
+        this.points = points;
+      }
+    }
+
+    @Test @Tag("Q11")
+    public void parseJSONType() throws NoSuchMethodException {
+      var listOfPoints = PointsBean.class.getMethod("setPoints", List.class).getGenericParameterTypes()[0];
+      var reader = new JSONReader();
+      assertAll(
+          () -> assertEquals(List.of(new Point(1, 2, null)), reader.parseJSON("""
+              [ { "x-coordinate": 1, "y-coordinate": 2 } ]
+              """, listOfPoints)),
+          () -> assertEquals(List.of(new Point(3, 4, null)), reader.parseJSON("""
+              { "points": [ { "x-coordinate": 3, "y-coordinate": 4 } ] }
+              """, PointsBean.class).points),
+          () -> assertThrows(NullPointerException.class, () -> reader.parseJSON(null, listOfPoints)),
+          () -> assertThrows(NullPointerException.class, () -> reader.parseJSON("", (Type) null))
+      );
+    }
+
+  }  // end of Q11
+
+
+  @Nested
+  public class Q12 {
+
+    @Test @Tag("Q12")
+    public void readJSONLines() {
+      var reader = new JSONReader();
+      var input = new ByteArrayInputStream("""
+          { "x-coordinate": 1, "y-coordinate": 2, "label": "été" }
+          { "label": "origin" }
+
+          { "y-coordinate": -3 }
+          """.getBytes(StandardCharsets.UTF_8));
+      assertEquals(List.of(new Point(1, 2, "été"), new Point(0, 0, "origin"), new Point(0, -3, null)),
+          reader.readJSONLines(input, Point.class).toList());
+    }
+
+    @Test @Tag("Q12")
+    public void readJSONLinesIsLazy() {
+      var reader = new JSONReader();
+      var stream = reader.readJSONLines(new StringReader("""
+          { "x-coordinate": 1 }
+          { "x-coordinate": 2 }
+          { "x-coordinate": oops }
+          """), Point.class);
+      assertEquals(List.of(new Point(1, 0, null), new Point(2, 0, null)), stream.limit(2).toList());
+    }
+
+    @Test @Tag("Q12")
+    public void readJSONLinesInvalidLine() {
+      var reader = new JSONReader();
+      assertAll(
+          () -> assertThrows(IllegalStateException.class, () -> reader.readJSONLines(new StringReader("""
+              { "x-coordinate": 1 }
+              { "x-coordinate": "2" }
+              """), Point.class).toList()),
+          () -> assertThrows(IllegalStateException.class, () -> reader.readJSONLines(new StringReader("""
+              { "x-coordinate": 1 } ]
+              """), Point.class).toList())
+      );
+    }
+
+    @Test @Tag("Q12")
+    public void readJSONLinesHuge() {
+      // 2 million lines generated on the fly, the lines are read using the same fixed size buffer
+      var reader = new JSONReader();
+      var count = 2_000_000;
+      var input = new Reader() {
+        private int line;
+        private String text = "";
+        private int index;
+
+        @Override
+        public int read(char[] buffer, int offset, int length) {
+          if (index == text.length()) {
+            if (line == count) {
+              return -1;
+            }
+            text = "{\"x-coordinate\": " + line++ + ", \"label\": \"a label\"}\n";
+            index = 0;
+          }
+          var read = Math.min(length, text.length() - index);
+          text.getChars(index, index + read, buffer, offset);
+          index += read;
+          return read;
+        }
+
+        @Override
+        public void close() {}
+      };
+      var sum = reader.readJSONLines(input, Point.class).mapToLong(Point::x).sum();
+      assertEquals((long) count * (count - 1) / 2, sum);
+    }
+
+    @Test @Tag("Q12")
+    public void readJSONLinesWrittenByJSONWriter() throws IOException {
+      var writer = new JSONWriter();
+      var reader = new JSONReader();
+      var points = List.of(new Point(1, 2, "a\nb"), new Point(3, 4, null));
+      var output = new ByteArrayOutputStream();
+      writer.toJSONLines(points.stream(), output);
+      assertEquals(points, reader.readJSONLines(new ByteArrayInputStream(output.toByteArray()), Point.class).toList());
+    }
+
+    @Test @Tag("Q12")
+    public void readJSONLinesPreconditions() {
+      var reader = new JSONReader();
+      assertAll(
+          () -> assertThrows(NullPointerException.class, () -> reader.readJSONLines((Reader) null, Point.class)),
+          () -> assertThrows(NullPointerException.class, () -> reader.readJSONLines((InputStream) null, Point.class)),
+          () -> assertThrows(NullPointerException.class, () -> reader.readJSONLines(new StringReader(""), null))
+      );
+    }
+
+  }  // end of Q12
+
+
+  @Nested
+  public class Q13 {
+
+    @Test @Tag("Q13")
+    public void readJSONLinesFileInParallel(@TempDir Path directory) throws IOException {
+      var writer = new JSONWriter();
+      var reader = new JSONReader();
+      var points = IntStream.range(0, 200_000)
+          .mapToObj(i -> new Point(i, -i, i % 10 == 0 ? "été \uD83D\uDE00" : null))
+          .toList();
+      var path = directory.resolve("points.jsonl");
+      try (var output = Files.newOutputStream(path)) {
+        writer.toJSONLines(points.stream(), output);
+      }
+      try (var stream = reader.readJSONLines(path, Point.class)) {
+        assertTrue(stream.isParallel());
+        assertEquals(points, stream.toList());
+      }
+      try (var stream = reader.readJSONLines(path, Point.class)) {
+        assertEquals(points.stream().mapToLong(Point::x).sum(), stream.unordered().mapToLong(Point::x).sum());
+      }
+      try (var stream = reader.readJSONLines(path, Point.class)) {
+        assertEquals(points, stream.sequential().toList());
+      }
+    }
+
+    @Test @Tag("Q13")
+    public void readJSONLinesFileSmallAndEmpty(@TempDir Path directory) throws IOException {
+      var reader = new JSONReader();
+      var small = Files.writeString(directory.resolve("small.jsonl"), """
+          { "x-coordinate": 1 }
+          { "label": "no newline at the end" }""");
+      var empty = Files.writeString(directory.resolve("empty.jsonl"), "");
+      try (var smallStream = reader.readJSONLines(small, Point.class);
+           var emptyStream = reader.readJSONLines(empty, Point.class)) {
+        assertAll(
+            () -> assertEquals(List.of(new Point(1, 0, null), new Point(0, 0, "no newline at the end")), smallStream.toList()),
+            () -> assertEquals(List.of(), emptyStream.toList())
+        );
+      }
+    }
+
+    @Test @Tag("Q13")
+    public void readJSONLinesFileInvalidLine(@TempDir Path directory) throws IOException {
+      var reader = new JSONReader();
+      var path = Files.writeString(directory.resolve("invalid.jsonl"),
+          "{ \"x-coordinate\": 1 }\n".repeat(100_000) + "{ \"x-coordinate\": oops }\n");
+      try (var stream = reader.readJSONLines(path, Point.class)) {
+        assertThrows(IllegalStateException.class, stream::toList);
+      }
+    }
+
+    @Test @Tag("Q13")
+    public void readJSONLinesFilePreconditions(@TempDir Path directory) {
+      var reader = new JSONReader();
+      assertAll(
+          () -> assertThrows(NullPointerException.class, () -> reader.readJSONLines((Path) null, Point.class)),
+          () -> assertThrows(NullPointerException.class, () -> reader.readJSONLines(directory.resolve("foo"), null)),
+          () -> assertThrows(IOException.class, () -> reader.readJSONLines(directory.resolve("missing.jsonl"), Point.class))
+      );
+    }
+
+  }  // end of Q13
+
+
+  @Nested
+  public class Q14 {
+
+    @Test @Tag("Q14")
+    public void parseJSONIgnoreUnknownKeys() {
+      var reader = JSONReader.builder().ignoreUnknownKeys(true).build();
+      var text = """
+          {
+            "metadata": { "version": 3, "tags": ["a", "]", "}"], "nested": [[{ "deep": "\\"" }]] },
+            "firstName": "ignored because not the JSON name",
+            "first-name": "Bob",
+            "flag": true,
+            "other": null
+          }
+          """;
+      assertAll(
+          () -> assertEquals("Bob", reader.parseJSON(text, Q9.RenamedBean.class).firstName),
+          () -> assertThrows(IllegalStateException.class, () -> new JSONReader().parseJSON(text, Q9.RenamedBean.class))
+      );
+    }
+
+    @Test @Tag("Q14")
+    public void parseJSONIgnoreUnknownKeysNested() {
+      var reader = JSONReader.builder().ignoreUnknownKeys(true).build();
+      var points = reader.parseJSON("""
+          [
+            { "x-coordinate": 1, "z-coordinate": 5, "y-coordinate": 2, "extra": { "a": [1, 2, 3] } },
+            { "label": "p", "history": [ { "x-coordinate": 9 } ] }
+          ]
+          """, new JSONReader.TypeReference<List<Point>>() {});
+      assertEquals(List.of(new Point(1, 2, null), new Point(0, 0, "p")), points);
+    }
+
+    @Test @Tag("Q14")
+    public void parseJSONIgnoreUnknownKeysUnterminated() {
+      var reader = JSONReader.builder().ignoreUnknownKeys(true).build();
+      assertThrows(IllegalStateException.class, () -> reader.parseJSON("""
+          { "first-name": "Bob", "unknown": [1, 2
+          """, Q9.RenamedBean.class));
+    }
+
+  }  // end of Q14
+
+
+  @Nested
+  public class Q15 {
+
+    @Test @Tag("Q15")
+    public void parseJSONAfterAnError() throws IOException {
+      var reader = new JSONReader();
+      assertAll(
+          () -> assertThrows(IllegalStateException.class, () -> reader.parseJSON("{ \"x-coordinate\": [1, 2", Point.class)),
+          () -> assertEquals(new Point(1, 2, null), reader.parseJSON("""
+              { "x-coordinate": 1, "y-coordinate": 2 }
+              """, Point.class)),
+          () -> assertThrows(IllegalStateException.class, () -> reader.readJSON(new StringReader("[[[["), Point.class)),
+          () -> assertEquals(new Point(3, 4, "p"), reader.readJSON(new StringReader("""
+              { "x-coordinate": 3, "y-coordinate": 4, "label": "p" }
+              """), Point.class))
+      );
+    }
+
+    @SuppressWarnings("unused")
+    public static class NestedTextBean {
+      private Point point;
+
+      public void setPoint(String text) {
+        // the reader is used while it is already parsing
+        point = new JSONReader().parseJSON(text, Point.class);
+      }
+    }
+
+    @Test @Tag("Q15")
+    public void parseJSONReentrant() {
+      var reader = new JSONReader();
+      var bean = reader.parseJSON("""
+          { "point": "{ \\"x-coordinate\\": 1, \\"y-coordinate\\": 2 }" }
+          """, NestedTextBean.class);
+      assertEquals(new Point(1, 2, null), bean.point);
+    }
+
+    @Test @Tag("Q15")
+    public void parseJSONConcurrently() throws InterruptedException {
+      var reader = new JSONReader();
+      var failures = new AtomicInteger();
+      var threads = IntStream.range(0, 8)
+          .mapToObj(t -> Thread.ofPlatform().start(() -> {
+            for (var i = 0; i < 10_000; i++) {
+              var point = reader.parseJSON("{ \"x-coordinate\": " + t + ", \"y-coordinate\": " + i + " }", Point.class);
+              if (!point.equals(new Point(t, i, null))) {
+                failures.incrementAndGet();
+              }
+            }
+          }))
+          .toList();
+      for (var thread : threads) {
+        thread.join();
+      }
+      assertEquals(0, failures.get());
+    }
+
+  }  // end of Q15
 }
\ No newline at end of file
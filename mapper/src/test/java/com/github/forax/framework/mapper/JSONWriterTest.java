@@ -4,14 +4,43 @@ import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.sql.Timestamp;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.MonthDay;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalDouble;
+import java.util.OptionalInt;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -32,6 +61,32 @@ public class JSONWriterTest {
           () -> assertEquals("\"foo\"", writer.toJSON("foo"))
       );
     }
+
+    @Test @Tag("Q1")
+    public void toJSONEscapeString() {
+      var writer = new JSONWriter();
+      assertAll(
+          () -> assertEquals("\"\"", writer.toJSON("")),
+          () -> assertEquals("\"a\\\"b\"", writer.toJSON("a\"b")),
+          () -> assertEquals("\"a\\\\b\"", writer.toJSON("a\\b")),
+          () -> assertEquals("\"\\b\\f\\n\\r\\t\"", writer.toJSON("\b\f\n\r\t")),
+          () -> assertEquals("\"\\u0000a\\u001f\"", writer.toJSON("\u0000a\u001f")),
+          () -> assertEquals("\"/\u007f\"", writer.toJSON("/\u007f")),
+          () -> assertEquals("\"été \uD83D\uDE00\"", writer.toJSON("été \uD83D\uDE00"))
+      );
+    }
+
+    @Test @Tag("Q1")
+    public void toJSONEscapeNonASCII() {
+      var writer = new JSONWriter();
+      writer.setEscapeNonASCII(true);
+      assertAll(
+          () -> assertEquals("\"foo\"", writer.toJSON("foo")),
+          () -> assertEquals("\"\\u00e9t\\u00e9\\n\"", writer.toJSON("été\n")),
+          () -> assertEquals("\"\\ud83d\\ude00\"", writer.toJSON("\uD83D\uDE00")),
+          () -> assertEquals("\"\\u5317\\u4eac\"", writer.toJSON("北京"))
+      );
+    }
   }  // end of Q1
 
 
@@ -103,6 +158,18 @@ public class JSONWriterTest {
       assertEquals("{}", json);
     }
 
+    @Test @Tag("Q2")
+    public void toJSONGetterThrowsAnException() {
+      class Failing {
+        public String getName() {
+          throw new IllegalStateException("no name");
+        }
+      }
+      var writer = new JSONWriter();
+      var e = assertThrows(IllegalStateException.class, () -> writer.toJSON(new Failing()));
+      assertEquals("no name", e.getMessage());
+    }
+
   } // end of Q2
 
   public static class StartDate {
@@ -154,6 +221,120 @@ public class JSONWriterTest {
       );
     }
 
+    @Test @Tag("Q5")
+    public void toJSONWithABuilder() {
+      var writer = JSONWriter.builder()
+          .configure(LocalDateTime.class, time -> time.format(DateTimeFormatter.ISO_LOCAL_DATE_TIME))
+          .escapeNonASCII(true)
+          .build();
+      var startDate = new StartDate(LocalDateTime.of(2021, 7, 1, 20, 7));
+      assertAll(
+          () -> assertEquals("""
+              {"time": 2021-07-01T20:07:00}\
+              """, writer.toJSON(startDate)),
+          () -> assertEquals("\"\\u00e9t\\u00e9\"", writer.toJSON("été"))
+      );
+    }
+
+    @Test @Tag("Q5")
+    public void builderConfigureTwice() {
+      var builder = JSONWriter.builder().configure(LocalTime.class, __ -> "foo");
+      assertThrows(IllegalStateException.class, () -> builder.configure(LocalTime.class, __ -> "bar"));
+    }
+
+    @Test @Tag("Q5")
+    public void builderPreconditions() {
+      var builder = JSONWriter.builder();
+      assertAll(
+          () -> assertThrows(NullPointerException.class, () -> builder.configure(null, String::toString)),
+          () -> assertThrows(NullPointerException.class, () -> builder.configure(Timestamp.class, null))
+      );
+    }
+
+    @Test @Tag("Q5")
+    public void builtWriterIsImmutable() {
+      var builder = JSONWriter.builder();
+      var writer = builder.build();
+      builder.configure(LocalTime.class, __ -> "foo");
+      assertAll(
+          () -> assertEquals("\"10:15\"", writer.toJSON(LocalTime.of(10, 15))),
+          () -> assertThrows(IllegalStateException.class, () -> writer.configure(LocalTime.class, __ -> "bar")),
+          () -> assertThrows(IllegalStateException.class, () -> writer.setEscapeNonASCII(true)),
+          () -> assertThrows(IllegalStateException.class, () -> writer.setBytecodeGeneration(true))
+      );
+    }
+
+    @Test @Tag("Q5")
+    public void toJSONFromSeveralThreads() throws InterruptedException {
+      record Point(int x, int y) { }
+      var writer = JSONWriter.builder()
+          .configure(LocalTime.class, time -> "\"" + time.getHour() + "h\"")
+          .build();
+      var errors = new CopyOnWriteArrayList<Throwable>();
+      var threads = IntStream.range(0, 4).mapToObj(t -> Thread.ofPlatform().start(() -> {
+        try {
+          for (var i = 0; i < 10_000; i++) {
+            assertEquals("[{\"x\": " + i + ", \"y\": " + t + "}, \"10h\"]",
+                writer.toJSON(List.of(new Point(i, t), LocalTime.of(10, 0))));
+          }
+        } catch (Throwable e) {
+          errors.add(e);
+        }
+      })).toList();
+      for (var thread : threads) {
+        thread.join();
+      }
+      assertEquals(List.of(), errors);
+    }
+
+    @Test @Tag("Q5")
+    public void configureWhileWritingFromAnotherThread() throws InterruptedException {
+      var writer = new JSONWriter();
+      var thread = Thread.ofPlatform().start(() -> {
+        for (var i = 0; i < 10_000; i++) {
+          var json = writer.toJSON(List.of(LocalTime.of(10, 0)));
+          assertTrue(json.equals("[\"10:00\"]") || json.equals("[\"10h\"]"), json);
+        }
+      });
+      writer.configure(LocalTime.class, time -> "\"" + time.getHour() + "h\"");
+      thread.join();
+      assertEquals("[\"10h\"]", writer.toJSON(List.of(LocalTime.of(10, 0))));
+    }
+
+    public record Caller(String name) {
+      private static final StackWalker STACK_WALKER =
+          StackWalker.getInstance(Set.of(StackWalker.Option.RETAIN_CLASS_REFERENCE, StackWalker.Option.SHOW_HIDDEN_FRAMES));
+      private static final CopyOnWriteArrayList<Class<?>> CALLERS = new CopyOnWriteArrayList<>();
+
+      @Override
+      public String name() {
+        // record the class of the generator that calls the accessor
+        CALLERS.add(STACK_WALKER.walk(frames -> frames.skip(1).findFirst().orElseThrow().getDeclaringClass()));
+        return name;
+      }
+    }
+
+    @Test @Tag("Q5")
+    public void setEscapeNonASCIIKeepsTheGenerators() {
+      var writer = new JSONWriter();
+      writer.setBytecodeGeneration(true);
+      Caller.CALLERS.clear();
+      assertEquals("{\"name\": \"é\"}", writer.toJSON(new Caller("é")));
+      writer.setEscapeNonASCII(true);
+      assertEquals("{\"name\": \"\\u00e9\"}", writer.toJSON(new Caller("é")));
+      writer.setBytecodeGeneration(false);
+      writer.setBytecodeGeneration(true);
+      writer.setEscapeNonASCII(false);
+      assertEquals("{\"name\": \"é\"}", writer.toJSON(new Caller("é")));
+      var callers = Caller.CALLERS;
+      assertAll(
+          () -> assertEquals(3, callers.size()),
+          () -> assertTrue(callers.getFirst().isHidden()),
+          () -> assertSame(callers.getFirst(), callers.get(1)),
+          () -> assertSame(callers.getFirst(), callers.get(2))
+      );
+    }
+
   } // end of Q5
 
   public static final class Person {
@@ -189,6 +370,33 @@ public class JSONWriterTest {
           json);
     }
 
+    @Test @Tag("Q6")
+    public void toJSONWithJSONPropertyToEscape() {
+      record Quote(@JSONProperty("the \"text\"") String text, @JSONProperty("auteur·e") String author) { }
+      var writer = new JSONWriter();
+      var quote = new Quote("\"Tout\" est\nlà", "Anonyme");
+      assertEquals("""
+          {"the \\"text\\"": "\\"Tout\\" est\\nlà", "auteur·e": "Anonyme"}\
+          """,
+          writer.toJSON(quote));
+      writer.setEscapeNonASCII(true);
+      assertEquals("""
+          {"the \\"text\\"": "\\"Tout\\" est\\nl\\u00e0", "auteur\\u00b7e": "Anonyme"}\
+          """,
+          writer.toJSON(quote));
+    }
+
+    @Test @Tag("Q6")
+    public void toUTF8WithJSONPropertyToEscape() throws IOException {
+      record Quote(@JSONProperty("the \"text\"") String text, @JSONProperty("auteur·e") String author) { }
+      var writer = new JSONWriter();
+      writer.setEscapeNonASCII(true);
+      var quote = new Quote("\"Tout\" est\nlà", "Anonyme");
+      var output = new ByteArrayOutputStream();
+      writer.toUTF8(quote, output);
+      assertArrayEquals(writer.toJSON(quote).getBytes(StandardCharsets.US_ASCII), output.toByteArray());
+    }
+
   } // end of Q6
 
 
@@ -250,5 +458,426 @@ public class JSONWriterTest {
           json);
     }
 
+    @Test @Tag("Q7")
+    public void toJSONWithNumbers() {
+      var writer = new JSONWriter();
+      assertAll(
+          () -> assertEquals("9007199254740993", writer.toJSON(9007199254740993L)),
+          () -> assertEquals("1.5", writer.toJSON(1.5f)),
+          () -> assertEquals("-3", writer.toJSON((short) -3)),
+          () -> assertEquals("7", writer.toJSON((byte) 7)),
+          () -> assertEquals("123456789012345678901234567890", writer.toJSON(new BigInteger("123456789012345678901234567890"))),
+          () -> assertEquals("3.14159265358979323846", writer.toJSON(new BigDecimal("3.14159265358979323846")))
+      );
+    }
+
+    @Test @Tag("Q7")
+    public void toJSONWithEnumsAndJavaTime() {
+      enum Color { RED, GREEN { @Override public String toString() { return "green"; } } }
+      var writer = new JSONWriter();
+      assertAll(
+          () -> assertEquals("\"RED\"", writer.toJSON(Color.RED)),
+          () -> assertEquals("\"GREEN\"", writer.toJSON(Color.GREEN)),
+          () -> assertEquals("\"MONDAY\"", writer.toJSON(DayOfWeek.MONDAY)),
+          () -> assertEquals("\"2021-07-01T20:07:12\"", writer.toJSON(LocalDateTime.of(2021, 7, 1, 20, 7, 12))),
+          () -> assertEquals("\"2021-07-01\"", writer.toJSON(LocalDate.of(2021, 7, 1))),
+          () -> assertEquals("\"PT1H30M\"", writer.toJSON(Duration.ofMinutes(90))),
+          () -> assertEquals("\"Europe/Paris\"", writer.toJSON(ZoneId.of("Europe/Paris"))),
+          () -> assertEquals("\"1970-01-01T00:00:00Z\"", writer.toJSON(Instant.EPOCH))
+      );
+    }
+
+    @Test @Tag("Q7")
+    public void toJSONWithOptionals() {
+      var writer = new JSONWriter();
+      assertAll(
+          () -> assertEquals("\"foo\"", writer.toJSON(Optional.of("foo"))),
+          () -> assertEquals("null", writer.toJSON(Optional.empty())),
+          () -> assertEquals("42", writer.toJSON(OptionalInt.of(42))),
+          () -> assertEquals("null", writer.toJSON(OptionalInt.empty())),
+          () -> assertEquals("42", writer.toJSON(OptionalLong.of(42))),
+          () -> assertEquals("4.5", writer.toJSON(OptionalDouble.of(4.5)))
+      );
+    }
+
+    @Test @Tag("Q7")
+    public void toJSONWithCollections() {
+      record Point(int x, int y) { }
+      var writer = new JSONWriter();
+      assertAll(
+          () -> assertEquals("[]", writer.toJSON(List.of())),
+          () -> assertEquals("""
+              [{"x": 1, "y": 2}, {"x": 3, "y": 4}]\
+              """, writer.toJSON(List.of(new Point(1, 2), new Point(3, 4)))),
+          () -> assertEquals("[1, \"foo\", null]", writer.toJSON(Arrays.asList(1, "foo", null))),
+          () -> assertEquals("[1, 2, 3]", writer.toJSON(new LinkedList<>(List.of(1, 2, 3)))),
+          () -> assertEquals("[\"a\", \"b\"]", writer.toJSON(new TreeSet<>(Set.of("b", "a"))))
+      );
+    }
+
+    @Test @Tag("Q7")
+    public void toJSONWithArrays() {
+      var writer = new JSONWriter();
+      assertAll(
+          () -> assertEquals("[]", writer.toJSON(new int[0])),
+          () -> assertEquals("[1, -2, 3]", writer.toJSON(new int[] { 1, -2, 3 })),
+          () -> assertEquals("[1, 9007199254740993]", writer.toJSON(new long[] { 1, 9007199254740993L })),
+          () -> assertEquals("[1.0, 2.5]", writer.toJSON(new double[] { 1, 2.5 })),
+          () -> assertEquals("[true, false]", writer.toJSON(new boolean[] { true, false })),
+          () -> assertEquals("[1.5]", writer.toJSON(new float[] { 1.5f })),
+          () -> assertEquals("\"abc\"", writer.toJSON(new char[] { 'a', 'b', 'c' })),
+          () -> assertEquals("[\"foo\", [1, 2], null]", writer.toJSON(new Object[] { "foo", new int[] { 1, 2 }, null }))
+      );
+    }
+
+    @Test @Tag("Q7")
+    public void toJSONWithMaps() {
+      record Person(String name, Map<String, int[]> scores) { }
+      var writer = new JSONWriter();
+      var scores = new LinkedHashMap<String, int[]>();
+      scores.put("math", new int[] { 12, 15 });
+      scores.put("bio\"logy", new int[0]);
+      assertAll(
+          () -> assertEquals("{}", writer.toJSON(Map.of())),
+          () -> assertEquals("""
+              {"name": "Ana", "scores": {"math": [12, 15], "bio\\"logy": []}}\
+              """, writer.toJSON(new Person("Ana", scores))),
+          () -> assertThrows(IllegalArgumentException.class, () -> writer.toJSON(Map.of(1, "foo")))
+      );
+    }
+
+    @Test @Tag("Q7")
+    public void toUTF8WithAListOfRecords() throws IOException {
+      record Point(int x, int y) { }
+      var writer = new JSONWriter();
+      var points = IntStream.range(0, 1_000).mapToObj(i -> new Point(i, -i)).toList();
+      var output = new ByteArrayOutputStream();
+      writer.toUTF8(points, output);
+      assertArrayEquals(writer.toJSON(points).getBytes(StandardCharsets.UTF_8), output.toByteArray());
+    }
+
+    @Test @Tag("Q7")
+    public void toJSONWithBytecodeGeneration() {
+      record Address(String street, int number, @JSONProperty("zip-code") long zipCode) { }
+      record Person(String name, Address address, Address secondary, double size, boolean active, char initial,
+                    short s, byte b, float f, Integer age, List<String> nicknames, DayOfWeek day, LocalDate birthday) { }
+      var writer = new JSONWriter();
+      writer.setBytecodeGeneration(true);
+      var person = new Person("Bob \"the\" builder", new Address("21 Jump Street", 21, 75_000), null, 1.8, true, 'B',
+          (short) 3, (byte) 4, 5.5f, null, List.of("bobby"), DayOfWeek.FRIDAY, LocalDate.of(2001, 2, 3));
+      assertEquals("""
+          {"name": "Bob \\"the\\" builder", "address": {"street": "21 Jump Street", "number": 21, "zip-code": 75000}, \
+          "secondary": null, "size": 1.8, "active": true, "initial": "B", "s": 3, "b": 4, "f": 5.5, "age": null, \
+          "nicknames": ["bobby"], "day": "FRIDAY", "birthday": "2001-02-03"}\
+          """,
+          writer.toJSON(person));
+    }
+
+    @Test @Tag("Q7")
+    public void toJSONWithBytecodeGenerationSameAsWithout() {
+      var writer = new JSONWriter();
+      writer.configure(MonthDay.class, monthDay -> writer.toJSON(monthDay.getMonth() + "-" + monthDay.getDayOfMonth()));
+      var person = new PersonInfo(MonthDay.of(4, 17), new AddressInfo());
+      var expected = writer.toJSON(person);
+      writer.setBytecodeGeneration(true);
+      assertAll(
+          () -> assertEquals(expected, writer.toJSON(person)),
+          () -> assertEquals(expected, writer.toJSON(person)),
+          () -> assertEquals(writer.toJSON(new Alien("Elvis", "Proxima Centauri")),
+              new JSONWriter().toJSON(new Alien("Elvis", "Proxima Centauri")))
+      );
+    }
+
+    @Test @Tag("Q7")
+    public void toJSONWithBytecodeGenerationRecursive() {
+      record Node(String name, Node next) { }
+      var writer = new JSONWriter();
+      writer.setBytecodeGeneration(true);
+      var node = new Node("a", new Node("b", new Node("c", null)));
+      assertEquals("""
+          {"name": "a", "next": {"name": "b", "next": {"name": "c", "next": null}}}\
+          """,
+          writer.toJSON(node));
+    }
+
+    @Test @Tag("Q7")
+    public void toJSONWithBytecodeGenerationAndConfigure() {
+      record Address(String street) { }
+      record Person(String name, Address address, long id) { }
+      var writer = new JSONWriter();
+      writer.setBytecodeGeneration(true);
+      var person = new Person("Bob", new Address("21 Jump Street"), 42);
+      assertEquals("""
+          {"name": "Bob", "address": {"street": "21 Jump Street"}, "id": 42}\
+          """,
+          writer.toJSON(person));
+      writer.configure(Address.class, address -> writer.toJSON(address.street()));
+      writer.configure(Long.class, id -> "\"#" + id + "\"");
+      assertEquals("""
+          {"name": "Bob", "address": "21 Jump Street", "id": "#42"}\
+          """,
+          writer.toJSON(person));
+    }
+
+    @Test @Tag("Q7")
+    public void toJSONWithBytecodeGenerationEscapeNonASCII() {
+      record Person(@JSONProperty("prénom") String name) { }
+      var writer = new JSONWriter();
+      writer.setBytecodeGeneration(true);
+      assertEquals("""
+          {"prénom": "Zoé"}\
+          """,
+          writer.toJSON(new Person("Zoé")));
+      writer.setEscapeNonASCII(true);
+      assertEquals("""
+          {"pr\\u00e9nom": "Zo\\u00e9"}\
+          """,
+          writer.toJSON(new Person("Zoé")));
+    }
+
+    @Test @Tag("Q7")
+    public void toJSONWithBytecodeGenerationGetterThrowsAnException() {
+      record Failing(String name) {
+        @Override
+        public String name() {
+          throw new IllegalStateException("no name");
+        }
+      }
+      var writer = new JSONWriter();
+      writer.setBytecodeGeneration(true);
+      assertThrows(IllegalStateException.class, () -> writer.toJSON(new Failing("foo")));
+    }
+
+    @Test @Tag("Q7")
+    public void toJSONWithAnAppendable() throws IOException {
+      record Address(String street) { }
+      record Person(String name, Address address) { }
+      var writer = new JSONWriter();
+      var builder = new StringBuilder("[");
+      writer.toJSON(new Person("Bob", new Address("21 Jump Street")), builder);
+      builder.append(", ");
+      writer.toJSON(null, builder);
+      builder.append(']');
+      assertEquals("""
+          [{"name": "Bob", "address": {"street": "21 Jump Street"}}, null]\
+          """,
+          builder.toString());
+    }
+
+    @Test @Tag("Q7")
+    public void toJSONWithAWriter() throws IOException {
+      var writer = new JSONWriter();
+      writer.configure(MonthDay.class, monthDay -> writer.toJSON(monthDay.getMonth() + "-" + monthDay.getDayOfMonth()));
+      var person = new PersonInfo(MonthDay.of(4, 17), new AddressInfo());
+      var stringWriter = new StringWriter();
+      writer.toJSON(person, stringWriter);
+      assertEquals(writer.toJSON(person), stringWriter.toString());
+    }
+
+    @Test @Tag("Q7")
+    public void toJSONWithAnAppendablePrecondition() {
+      var writer = new JSONWriter();
+      assertThrows(NullPointerException.class, () -> writer.toJSON("foo", null));
+    }
+
+    @Test @Tag("Q7")
+    public void toUTF8WithAnOutputStream() throws IOException {
+      record Person(String name, @JSONProperty("città") String city) { }
+      var writer = new JSONWriter();
+      var person = new Person("Zoë \uD83D\uDE00", "北京");
+      var output = new ByteArrayOutputStream();
+      writer.toUTF8(person, output);
+      assertArrayEquals(writer.toJSON(person).getBytes(StandardCharsets.UTF_8), output.toByteArray());
+    }
+
+    @Test @Tag("Q7")
+    public void toUTF8WithALongText() throws IOException {
+      record Text(String content) { }
+      var writer = new JSONWriter();
+      var text = new Text("ça va ".repeat(10_000));
+      var output = new ByteArrayOutputStream();
+      writer.toUTF8(text, output);
+      assertArrayEquals(writer.toJSON(text).getBytes(StandardCharsets.UTF_8), output.toByteArray());
+    }
+
+    @Test @Tag("Q7")
+    public void toUTF8WithAnUnpairedSurrogate() throws IOException {
+      var writer = new JSONWriter();
+      var text = "a\uD83Db\uDE00c\uD83D";
+      var output = new ByteArrayOutputStream();
+      writer.toUTF8(text, output);
+      assertArrayEquals(writer.toJSON(text).getBytes(StandardCharsets.UTF_8), output.toByteArray());
+    }
+
+    @Test @Tag("Q7")
+    public void toUTF8WithAByteBuffer() {
+      record Person(String name, int age) { }
+      var writer = new JSONWriter();
+      var byteBuffer = ByteBuffer.allocate(1_024);
+      var result = writer.toUTF8(new Person("Ana", 37), byteBuffer);
+      assertSame(byteBuffer, result);
+      assertEquals("""
+          {"name": "Ana", "age": 37}\
+          """,
+          StandardCharsets.UTF_8.decode(result.flip()).toString());
+    }
+
+    @Test @Tag("Q7")
+    public void toUTF8WithAByteBufferThatGrows() {
+      record Person(String name, int age) { }
+      var writer = new JSONWriter();
+      var byteBuffer = ByteBuffer.allocateDirect(4).put((byte) '[');
+      var result = writer.toUTF8(new Person("Ana", 37), byteBuffer);
+      assertTrue(result.isDirect());
+      assertEquals("""
+          [{"name": "Ana", "age": 37}\
+          """,
+          StandardCharsets.UTF_8.decode(result.flip()).toString());
+    }
+
+    @Test @Tag("Q7")
+    public void toUTF8WithASlicedByteBufferThatGrows() {
+      record Person(String name, int age) { }
+      var writer = new JSONWriter();
+      var byteBuffer = ByteBuffer.allocate(16).position(8).slice().put((byte) '[');
+      var result = writer.toUTF8(new Person("Ana", 37), byteBuffer);
+      assertEquals("""
+          [{"name": "Ana", "age": 37}\
+          """,
+          StandardCharsets.UTF_8.decode(result.flip()).toString());
+    }
+
+    @Test @Tag("Q7")
+    public void toUTF8NumbersThatFitInTheByteBuffer() {
+      var writer = new JSONWriter();
+      var byteBuffer = ByteBuffer.allocate(8);
+      var longBuffer = ByteBuffer.allocate(20);
+      assertAll(
+          () -> assertSame(byteBuffer, writer.toUTF8(42, byteBuffer)),
+          () -> assertEquals("42", StandardCharsets.UTF_8.decode(byteBuffer.flip()).toString()),
+          () -> assertSame(longBuffer, writer.toUTF8(Long.MIN_VALUE, longBuffer)),
+          () -> assertEquals("-9223372036854775808", StandardCharsets.UTF_8.decode(longBuffer.flip()).toString())
+      );
+    }
+
+    @Test @Tag("Q7")
+    public void toUTF8DoesNotChangeTheByteBufferThatGrows() {
+      var writer = new JSONWriter();
+      for (var byteBuffer : List.of(ByteBuffer.allocate(4), ByteBuffer.allocateDirect(4))) {
+        byteBuffer.put((byte) '[');
+        var result = writer.toUTF8(List.of(123_456_789, "foo"), byteBuffer);
+        assertAll(
+            () -> assertEquals(1, byteBuffer.position()),
+            () -> assertEquals(4, byteBuffer.limit()),
+            () -> assertEquals("[[123456789, \"foo\"]", StandardCharsets.UTF_8.decode(result.flip()).toString())
+        );
+      }
+    }
+
+    @Test @Tag("Q7")
+    public void toUTF8Preconditions() {
+      var writer = new JSONWriter();
+      assertAll(
+          () -> assertThrows(NullPointerException.class, () -> writer.toUTF8("foo", (OutputStream) null)),
+          () -> assertThrows(NullPointerException.class, () -> writer.toUTF8("foo", (ByteBuffer) null))
+      );
+    }
+
+    @Test @Tag("Q7")
+    public void toJSONLines() throws IOException {
+      record Event(String type, @JSONProperty("ts") long timestamp) { }
+      var writer = new JSONWriter();
+      var output = new ByteArrayOutputStream();
+      writer.toJSONLines(Stream.of(new Event("start", 1L), new Event("été\n", 2L), new Event("stop", 3L)), output);
+      assertEquals("""
+          {"type": "start", "ts": 1}
+          {"type": "été\\n", "ts": 2}
+          {"type": "stop", "ts": 3}
+          """, output.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test @Tag("Q7")
+    public void toJSONLinesEmpty() throws IOException {
+      var writer = new JSONWriter();
+      var output = new ByteArrayOutputStream();
+      writer.toJSONLines(Stream.empty(), output);
+      assertEquals(0, output.size());
+    }
+
+    @Test @Tag("Q7")
+    public void toJSONLinesHuge() throws IOException {
+      // the lines are generated lazily and written into an output stream that only counts the bytes
+      record Point(int x, int y) { }
+      var writer = new JSONWriter();
+      var output = new OutputStream() {
+        private long count;
+        private long lines;
+
+        @Override
+        public void write(int b) {
+          write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) {
+          count += length;
+          for (var i = offset; i < offset + length; i++) {
+            lines += bytes[i] == '\n' ? 1 : 0;
+          }
+        }
+      };
+      writer.toJSONLines(IntStream.range(0, 1_000_000).mapToObj(i -> new Point(i, -i)), output);
+      assertEquals(1_000_000, output.lines);
+      assertEquals(IntStream.range(0, 1_000_000).mapToLong(i -> writer.toJSON(new Point(i, -i)).length() + 1).sum(), output.count);
+    }
+
+    @Test @Tag("Q7")
+    public void toJSONLinesPreconditions() {
+      var writer = new JSONWriter();
+      assertAll(
+          () -> assertThrows(NullPointerException.class, () -> writer.toJSONLines(null, new ByteArrayOutputStream())),
+          () -> assertThrows(NullPointerException.class, () -> writer.toJSONLines(Stream.of(), null))
+      );
+    }
+
+    @Test @Tag("Q7")
+    public void toJSONAfterAHugeText() {
+      var writer = new JSONWriter();
+      var huge = writer.toJSON(IntStream.range(0, 100_000).boxed().toList());
+      assertAll(
+          () -> assertEquals(688_890, huge.length()),
+          () -> assertEquals("[1, 2]", writer.toJSON(List.of(1, 2))),
+          () -> assertEquals("\"été\"", writer.toJSON("été")),
+          () -> assertEquals("[3]", writer.toJSON(List.of(3)))
+      );
+    }
+
+    @Test @Tag("Q7")
+    public void toUTF8IntegersAndLongs() throws IOException {
+      record Numbers(int i, long l) { }
+      var writer = new JSONWriter();
+      for (var numbers : List.of(new Numbers(0, 0L), new Numbers(-1, 9L), new Numbers(10, -10L),
+          new Numbers(Integer.MIN_VALUE, Long.MIN_VALUE), new Numbers(Integer.MAX_VALUE, Long.MAX_VALUE))) {
+        var output = new ByteArrayOutputStream();
+        writer.toUTF8(numbers, output);
+        assertEquals(writer.toJSON(numbers), output.toString(StandardCharsets.UTF_8));
+      }
+    }
+
+    @Test @Tag("Q7")
+    public void toUTF8AfterAnIOException() throws IOException {
+      var writer = new JSONWriter();
+      var failing = new OutputStream() {
+        @Override
+        public void write(int b) throws IOException {
+          throw new IOException("failure");
+        }
+      };
+      assertThrows(IOException.class, () -> writer.toUTF8(List.of("lost", "\uD83D"), failing));
+      var output = new ByteArrayOutputStream();
+      writer.toUTF8(List.of("ok"), output);
+      assertEquals("[\"ok\"]", output.toString(StandardCharsets.UTF_8));
+    }
+
   }  // end of Q7
 }
@@ -3,6 +3,12 @@ package com.github.forax.framework.mapper;
 import com.github.forax.framework.mapper.ToyJSONParser.JSONVisitor;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.lang.foreign.MemorySegment;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -12,62 +18,72 @@ import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.assertAll;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 class ToyJSONParserTest {
-  private static Object asJava(String text) {
-    var visitor = new JSONVisitor() {
-      private Object result;
-      private final ArrayDeque<Object> stack = new ArrayDeque<>();
+  private static final class JavaVisitor implements JSONVisitor {
+    private Object result;
+    private final ArrayDeque<Object> stack = new ArrayDeque<>();
 
-      @Override
-      @SuppressWarnings("unchecked")
-      public void value(String key, Object value) {
-        var data = stack.peek();
-        if (data instanceof Map<?,?> map) {
-          ((Map<String, Object>) map).put(key, value);
-          return;
-        }
-        if (data instanceof List<?> list) {
-          ((List<Object>) list).add(value);
-          return;
-        }
-        throw new AssertionError();
+    @Override
+    @SuppressWarnings("unchecked")
+    public void value(String key, Object value) {
+      var data = stack.peek();
+      if (data instanceof Map<?,?> map) {
+        ((Map<String, Object>) map).put(key, value);
+        return;
       }
-
-      @Override
-      public void startObject(String key) {
-        stack.push(new HashMap<String, Object>());
+      if (data instanceof List<?> list) {
+        ((List<Object>) list).add(value);
+        return;
       }
+      throw new AssertionError();
+    }
 
-      @Override
-      public void endObject(String key) {
-        var data = stack.pop();
-        if (stack.isEmpty()) {
-          result = data;
-        } else {
-          value(key, data);
-        }
-      }
+    @Override
+    public void startObject(String key) {
+      stack.push(new HashMap<String, Object>());
+    }
 
-      @Override
-      public void startArray(String key) {
-        stack.push(new ArrayList<>());
+    @Override
+    public void endObject(String key) {
+      var data = stack.pop();
+      if (stack.isEmpty()) {
+        result = data;
+      } else {
+        value(key, data);
       }
+    }
 
-      @Override
-      public void endArray(String key) {
-        var data = stack.pop();
-        if (stack.isEmpty()) {
-          result = data;
-        } else {
-          value(key, data);
-        }
+    @Override
+    public void startArray(String key) {
+      stack.push(new ArrayList<>());
+    }
+
+    @Override
+    public void endArray(String key) {
+      var data = stack.pop();
+      if (stack.isEmpty()) {
+        result = data;
+      } else {
+        value(key, data);
       }
-    };
+    }
+  }
+
+  private static Object asJava(String text) {
+    var visitor = new JavaVisitor();
     ToyJSONParser.parse(text, visitor);
     return visitor.result;
   }
 
+  private static Object asJava(Reader reader, int bufferSize) throws IOException {
+    var visitor = new JavaVisitor();
+    ToyJSONParser.parse(reader, bufferSize, visitor);
+    return visitor.result;
+  }
+
   @Test
   public void parseObjects() {
     assertAll(
@@ -143,4 +159,231 @@ class ToyJSONParserTest {
         [ 13.4, null ]
         """));
   }
-}
\ No newline at end of file
+
+  @Test
+  public void parseNestedObjectsAndArrays() {
+    assertEquals(
+        Map.of("name", "Bob", "address", Map.of("city", "Paris", "zip", List.of(75, 0)), "tags", List.of(List.of(), Map.of())),
+        asJava("""
+            {"name":"Bob","address":{"city":"Paris","zip":[75,0]},"tags":[[],{}]}
+            """));
+  }
+
+  @Test
+  public void parseNumbers() {
+    assertAll(
+        () -> assertEquals(List.of(-12, 0, -0.5, 1.5e10, 2.0E-3, -1e2), asJava("[-12, 0, -0.5, 1.5e10, 2.0E-3, -1e2]")),
+        () -> assertEquals(List.of(2_147_483_647, -2_147_483_648), asJava("[2147483647, -2147483648]")),
+        () -> assertEquals(List.of(2_147_483_648L, -9_223_372_036_854_775_808L), asJava("[2147483648, -9223372036854775808]")),
+        () -> assertEquals(List.of(1e20), asJava("[100000000000000000000]"))
+    );
+  }
+
+  @Test
+  public void parseNumbersWithPrimitiveCallbacks() {
+    var events = new ArrayList<String>();
+    ToyJSONParser.parse("""
+        {"int": -12, "long": 2147483648, "double": 1.5, "huge": 100000000000000000000, "string": "1"}
+        """, new JSONVisitor() {
+      @Override
+      public void value(String key, Object value) {
+        events.add("value " + key + " " + value);
+      }
+      @Override
+      public void valueInt(String key, int value) {
+        events.add("int " + key + " " + value);
+      }
+      @Override
+      public void valueLong(String key, long value) {
+        events.add("long " + key + " " + value);
+      }
+      @Override
+      public void valueDouble(String key, double value) {
+        events.add("double " + key + " " + value);
+      }
+      @Override
+      public void startObject(String key) {}
+      @Override
+      public void endObject(String key) {}
+      @Override
+      public void startArray(String key) {}
+      @Override
+      public void endArray(String key) {}
+    });
+    assertEquals(List.of("int int -12", "long long 2147483648", "double double 1.5", "double huge 1.0E20", "value string 1"), events);
+  }
+
+  @Test
+  public void parseStringsWithEscapes() {
+    assertAll(
+        () -> assertEquals(List.of("a\"b", "\\/", "\b\f\n\r\t"), asJava("""
+            ["a\\"b", "\\\\\\/", "\\b\\f\\n\\r\\t"]
+            """)),
+        () -> assertEquals(List.of("\u00e9t\u00e9", "\uD83D\uDE00"), asJava("""
+            ["\\u00e9t\\u00E9", "\\uD83D\\uDE00"]
+            """)),
+        () -> assertEquals(Map.of("k\"ey", "été"), asJava("""
+            {"k\\"ey": "été"}
+            """))
+    );
+  }
+
+  @Test
+  public void parseWhitespaces() {
+    assertEquals(Map.of("a", List.of(1, 2)), asJava(" \t\r\n{ \"a\" :\r\n[ 1 ,\t2 ] }\n "));
+  }
+
+  @Test
+  public void parseInvalidTexts() {
+    assertAll(
+        () -> assertThrows(IllegalStateException.class, () -> asJava("")),
+        () -> assertThrows(IllegalStateException.class, () -> asJava("42")),
+        () -> assertThrows(IllegalStateException.class, () -> asJava("{")),
+        () -> assertThrows(IllegalStateException.class, () -> asJava("[1,]")),
+        () -> assertThrows(IllegalStateException.class, () -> asJava("[1 2]")),
+        () -> assertThrows(IllegalStateException.class, () -> asJava("{\"a\" 1}")),
+        () -> assertThrows(IllegalStateException.class, () -> asJava("{1: 2}")),
+        () -> assertThrows(IllegalStateException.class, () -> asJava("[\"abc]")),
+        () -> assertThrows(IllegalStateException.class, () -> asJava("[\"\\x\"]")),
+        () -> assertThrows(IllegalStateException.class, () -> asJava("[\"\\u12\"]")),
+        () -> assertThrows(IllegalStateException.class, () -> asJava("[\"\\u\uFF10\uFF10\uFF14\uFF11\"]")),
+        () -> assertThrows(IllegalStateException.class, () -> asJava("[\"\\u\u0660\u0660\u0664\u0661\"]")),
+        () -> assertThrows(IllegalStateException.class, () -> asJava("[01]")),
+        () -> assertThrows(IllegalStateException.class, () -> asJava("[1.]")),
+        () -> assertThrows(IllegalStateException.class, () -> asJava("[-]")),
+        () -> assertThrows(IllegalStateException.class, () -> asJava("[1e]")),
+        () -> assertThrows(IllegalStateException.class, () -> asJava("[tru]")),
+        () -> assertThrows(IllegalStateException.class, () -> asJava("[] []"))
+    );
+  }
+
+  @Test
+  public void parseReaderWithSmallBuffers() throws IOException {
+    var texts = List.of(
+        """
+        {"name":"Bob","address":{"city":"Paris","zip":[75,0]},"tags":[[],{}]}
+        """,
+        """
+        [-12, 0, -0.5, 1.5e10, 2.0E-3, -1e2, 2147483648, true, false, null]
+        """,
+        """
+        {"k\\"ey": ["a\\"b", "\\\\\\/", "\\b\\f\\n\\r\\t", "\\u00e9t\\u00E9", "\\uD83D\\uDE00", "été"]}
+        """,
+        "[\"" + "long string ".repeat(100) + "\", " + "1234567890".repeat(3) + "]"
+    );
+    for (var text : texts) {
+      var expected = asJava(text);
+      for (var bufferSize : new int[] { 1, 2, 3, 7, 16, 8_192 }) {
+        assertEquals(expected, asJava(new StringReader(text), bufferSize), "buffer size " + bufferSize);
+      }
+    }
+  }
+
+  @Test
+  public void parseReaderInvalidTexts() {
+    for (var text : List.of("", "42", "{", "[1,]", "[\"abc]", "[\"\\x\"]", "[01]", "[1e]", "[tru]", "[] []")) {
+      assertThrows(IllegalStateException.class, () -> asJava(new StringReader(text), 2), text);
+    }
+  }
+
+  @Test
+  public void parseReaderIOException() {
+    var exception = new IOException("oops");
+    var reader = new Reader() {
+      @Override
+      public int read(char[] buffer, int offset, int length) throws IOException {
+        throw exception;
+      }
+
+      @Override
+      public void close() {}
+    };
+    assertSame(exception, assertThrows(IOException.class, () -> ToyJSONParser.parse(reader, new JavaVisitor())));
+  }
+
+  @Test
+  public void parseInputStream() throws IOException {
+    var input = new ByteArrayInputStream("""
+        {"name": "\uD83D\uDE00 été", "age": 23}
+        """.getBytes(StandardCharsets.UTF_8));
+    var visitor = new JavaVisitor();
+    ToyJSONParser.parse(input, visitor);
+    assertEquals(Map.of("name", "\uD83D\uDE00 été", "age", 23), visitor.result);
+  }
+
+  @Test
+  public void parseMemorySegment() {
+    var text = """
+        {"name": "Zoë \uD83D\uDE00", "address": {"city": "北京", "zip": [75, 0]}, "tags": [[], {}], "escaped": "\\t"}
+        """;
+    var visitor = new JavaVisitor();
+    ToyJSONParser.parse(MemorySegment.ofArray(text.getBytes(StandardCharsets.UTF_8)), visitor);
+    assertEquals(asJava(text), visitor.result);
+  }
+
+  @Test
+  public void parseHugeReader() throws IOException {
+    // 512 M characters (1 GB as a String), generated on the fly and parsed with a fixed size buffer
+    var element = "{\"id\": 123456, \"name\": \"a name\", \"scores\": [1.5, -2e3], \"valid\": true},\n";
+    var count = (1L << 29) / element.length();
+    var reader = new Reader() {
+      private long remaining = count;
+      private String text = "[";
+      private int index;
+
+      @Override
+      public int read(char[] buffer, int offset, int length) {
+        if (index == text.length()) {
+          if (remaining < 0) {
+            return -1;
+          }
+          text = remaining-- == 0 ? "null]" : element;
+          index = 0;
+        }
+        var read = Math.min(length, text.length() - index);
+        text.getChars(index, index + read, buffer, offset);
+        index += read;
+        return read;
+      }
+
+      @Override
+      public void close() {}
+    };
+    var visitor = new JSONVisitor() {
+      private long values;
+      private int depth;
+      private int maxDepth;
+
+      @Override
+      public void value(String key, Object value) {
+        values++;
+      }
+
+      @Override
+      public void startObject(String key) {
+        maxDepth = Math.max(maxDepth, ++depth);
+      }
+
+      @Override
+      public void endObject(String key) {
+        depth--;
+      }
+
+      @Override
+      public void startArray(String key) {
+        maxDepth = Math.max(maxDepth, ++depth);
+      }
+
+      @Override
+      public void endArray(String key) {
+        depth--;
+      }
+    };
+    ToyJSONParser.parse(reader, visitor);
+    assertAll(
+        () -> assertEquals(5 * count + 1, visitor.values),
+        () -> assertEquals(3, visitor.maxDepth),
+        () -> assertEquals(0, visitor.depth)
+    );
+  }
+}
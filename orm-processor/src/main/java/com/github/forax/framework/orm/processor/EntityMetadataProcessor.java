@@ -0,0 +1,247 @@
+package com.github.forax.framework.orm.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * An annotation processor that generates, for each entity, a class containing the
+ * {@code EntityMetadata} of the entity so the ORM does not have to introspect the entity at runtime.
+ *
+ * An entity is a class annotated with {@code @Table} or having a getter annotated with
+ * {@code @Id}, {@code @Column} or {@code @GeneratedValue}.
+ * The properties are found using the same rules as {@link java.beans.Introspector},
+ * if an entity can not be described at compile time (a generic class, a private class, a property with no getter, etc),
+ * no class is generated and the ORM fallbacks to reflection.
+ */
+@SupportedAnnotationTypes({
+    EntityMetadataProcessor.TABLE,
+    EntityMetadataProcessor.ID,
+    EntityMetadataProcessor.COLUMN,
+    EntityMetadataProcessor.GENERATED_VALUE
+})
+public final class EntityMetadataProcessor extends AbstractProcessor {
+  private static final String PACKAGE = "com.github.forax.framework.orm";
+  static final String TABLE = PACKAGE + ".Table";
+  static final String ID = PACKAGE + ".Id";
+  static final String COLUMN = PACKAGE + ".Column";
+  static final String GENERATED_VALUE = PACKAGE + ".GeneratedValue";
+
+  // must be the same value as EntityMetadata.GENERATED_SUFFIX
+  private static final String GENERATED_SUFFIX = "_EntityMetadata";
+
+  private record Property(String name, TypeMirror type, ExecutableElement getter, ExecutableElement setter) {}
+
+  @Override
+  public SourceVersion getSupportedSourceVersion() {
+    return SourceVersion.latestSupported();
+  }
+
+  @Override
+  public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+    var entities = new LinkedHashSet<TypeElement>();
+    for (var annotation : annotations) {
+      for (var element : roundEnv.getElementsAnnotatedWith(annotation)) {
+        var entity = element instanceof TypeElement typeElement ? typeElement : element.getEnclosingElement();
+        if (entity instanceof TypeElement typeElement) {
+          entities.add(typeElement);
+        }
+      }
+    }
+    for (var entity : entities) {
+      if (!isSupported(entity)) {
+        continue;
+      }
+      findProperties(entity).ifPresent(properties -> generate(entity, properties));
+    }
+    return false;
+  }
+
+  private static boolean isSupported(TypeElement entity) {
+    if (entity.getKind() != ElementKind.CLASS || entity.getModifiers().contains(Modifier.ABSTRACT) ||
+        !entity.getTypeParameters().isEmpty()) {
+      return false;
+    }
+    for (Element element = entity; element instanceof TypeElement typeElement; element = element.getEnclosingElement()) {
+      if (typeElement.getModifiers().contains(Modifier.PRIVATE)) {
+        return false;
+      }
+      var nestingKind = typeElement.getNestingKind();
+      if (nestingKind == NestingKind.LOCAL || nestingKind == NestingKind.ANONYMOUS) {
+        return false;
+      }
+      if (nestingKind == NestingKind.MEMBER && !typeElement.getModifiers().contains(Modifier.STATIC) &&
+          typeElement.getEnclosingElement().getKind() == ElementKind.CLASS) {
+        return false;  // inner class
+      }
+    }
+    return true;
+  }
+
+  private static String decapitalize(String name) {
+    if (name.length() > 1 && Character.isUpperCase(name.charAt(1)) && Character.isUpperCase(name.charAt(0))) {
+      return name;
+    }
+    return Character.toLowerCase(name.charAt(0)) + name.substring(1);
+  }
+
+  private Optional<Map<String, Property>> findProperties(TypeElement entity) {
+    var types = processingEnv.getTypeUtils();
+    var getterMap = new TreeMap<String, ExecutableElement>();
+    var setterMap = new TreeMap<String, ExecutableElement>();
+    var methods = ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(entity));
+    for (var method : methods) {
+      var modifiers = method.getModifiers();
+      if (!modifiers.contains(Modifier.PUBLIC) || modifiers.contains(Modifier.STATIC)) {
+        continue;
+      }
+      var name = method.getSimpleName().toString();
+      var parameterCount = method.getParameters().size();
+      var returnKind = method.getReturnType().getKind();
+      if (parameterCount == 0 && returnKind != TypeKind.VOID && name.length() > 3 && name.startsWith("get")) {
+        getterMap.put(decapitalize(name.substring(3)), method);
+      } else if (parameterCount == 0 && returnKind == TypeKind.BOOLEAN && name.length() > 2 && name.startsWith("is")) {
+        getterMap.putIfAbsent(decapitalize(name.substring(2)), method);
+      } else if (parameterCount == 1 && returnKind == TypeKind.VOID && name.length() > 3 && name.startsWith("set")) {
+        setterMap.put(decapitalize(name.substring(3)), method);
+      }
+    }
+    getterMap.remove("class");
+
+    var properties = new TreeMap<String, Property>();
+    for (var entry : getterMap.entrySet()) {
+      var name = entry.getKey();
+      var getter = entry.getValue();
+      var type = getter.getReturnType();
+      var setter = setterMap.remove(name);
+      if (setter != null && !types.isSameType(types.erasure(setter.getParameters().getFirst().asType()), types.erasure(type))) {
+        setter = null;
+      }
+      properties.put(name, new Property(name, type, getter, setter));
+    }
+    if (!setterMap.keySet().stream().allMatch(properties::containsKey)) {
+      // a property without a getter is not supported
+      return Optional.empty();
+    }
+    return Optional.of(properties);
+  }
+
+  private static Optional<AnnotationMirror> findAnnotation(Element element, String annotationName) {
+    return element.getAnnotationMirrors().stream()
+        .<AnnotationMirror>map(mirror -> mirror)
+        .filter(mirror -> ((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().contentEquals(annotationName))
+        .findFirst();
+  }
+
+  private static Optional<String> annotationValue(Element element, String annotationName) {
+    return findAnnotation(element, annotationName)
+        .flatMap(mirror -> mirror.getElementValues().entrySet().stream()
+            .filter(entry -> entry.getKey().getSimpleName().contentEquals("value"))
+            .map(entry -> (String) entry.getValue().getValue())
+            .findFirst());
+  }
+
+  private static String stringLiteral(String text) {
+    return '"' + text.replace("\\", "\\\\").replace("\"", "\\\"") + '"';
+  }
+
+  private static boolean hasDefaultConstructor(TypeElement entity) {
+    return ElementFilter.constructorsIn(entity.getEnclosedElements()).stream()
+        .anyMatch(constructor -> constructor.getParameters().isEmpty() && constructor.getModifiers().contains(Modifier.PUBLIC));
+  }
+
+  private String setterValue(TypeMirror type) {
+    var types = processingEnv.getTypeUtils();
+    return switch (type.getKind()) {
+      case BOOLEAN -> "(boolean) value";
+      case CHAR -> "(char) value";
+      case BYTE, SHORT, INT, LONG, FLOAT, DOUBLE -> "((Number) value)." + type + "Value()";
+      default -> {
+        // like ORM.convert(), a number is converted to the numeric wrapper of the property
+        var erasure = types.erasure(type).toString();
+        yield switch (erasure) {
+          case "java.lang.Byte", "java.lang.Short", "java.lang.Integer", "java.lang.Long", "java.lang.Float", "java.lang.Double" ->
+              "value == null ? null : (" + erasure + ") ((Number) value)." + types.unboxedType(type) + "Value()";
+          default -> "(" + erasure + ") value";
+        };
+      }
+    };
+  }
+
+  private String generateProperty(String entityName, Property property) {
+    var types = processingEnv.getTypeUtils();
+    var getter = property.getter;
+    var columnName = annotationValue(getter, COLUMN).orElse(property.name).toUpperCase(Locale.ROOT);
+    var id = findAnnotation(getter, ID).isPresent();
+    var generatedValue = findAnnotation(getter, GENERATED_VALUE).isPresent();
+    var setter = property.setter == null ? "null" :
+        "(bean, value) -> ((" + entityName + ") bean)." + property.setter.getSimpleName() + "(" + setterValue(property.type) + ")";
+    return "        new EntityMetadata.PropertyMetadata(" + stringLiteral(property.name) + ", " + stringLiteral(columnName) + ", " +
+        types.erasure(property.type) + ".class, " + id + ", " + generatedValue + ",\n" +
+        "            bean -> ((" + entityName + ") bean)." + getter.getSimpleName() + "(),\n" +
+        "            " + setter + ")";
+  }
+
+  private void generate(TypeElement entity, Map<String, Property> properties) {
+    var elements = processingEnv.getElementUtils();
+    var packageName = elements.getPackageOf(entity).getQualifiedName().toString();
+    var binaryName = elements.getBinaryName(entity).toString();
+    var className = binaryName.substring(packageName.isEmpty() ? 0 : packageName.length() + 1) + GENERATED_SUFFIX;
+    var entityName = entity.getQualifiedName().toString();
+    var tableName = annotationValue(entity, TABLE).orElse(entity.getSimpleName().toString()).toUpperCase(Locale.ROOT);
+    var factory = hasDefaultConstructor(entity) ? entityName + "::new" : "null";
+    var propertyList = properties.values().stream()
+        .map(property -> generateProperty(entityName, property))
+        .collect(Collectors.joining(",\n"));
+
+    var code = (packageName.isEmpty() ? "" : "package " + packageName + ";\n\n") + """
+        import com.github.forax.framework.orm.EntityMetadata;
+        import java.util.List;
+
+        @javax.annotation.processing.Generated("%s")
+        public final class %s {
+          private %s() {
+            throw new AssertionError();
+          }
+
+          @SuppressWarnings({"unchecked", "rawtypes"})
+          public static EntityMetadata metadata() {
+            return new EntityMetadata(%s.class, %s, %s, List.of(
+        %s
+            ));
+          }
+        }
+        """.formatted(EntityMetadataProcessor.class.getName(), className, className,
+        entityName, stringLiteral(tableName), factory, propertyList);
+
+    try {
+      var sourceFile = processingEnv.getFiler().createSourceFile(
+          packageName.isEmpty() ? className : packageName + "." + className, entity);
+      try (var writer = sourceFile.openWriter()) {
+        writer.write(code);
+      }
+    } catch (IOException e) {
+      processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "can not generate " + className + " " + e.getMessage(), entity);
+    }
+  }
+}
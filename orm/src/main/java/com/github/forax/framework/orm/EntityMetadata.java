@@ -0,0 +1,59 @@
+package com.github.forax.framework.orm;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Description of an entity used by the {@link ORM}.
+ *
+ * The description is either generated at compile time by the annotation processor of the module
+ * {@code orm-processor}, as a class named after the binary name of the entity suffixed by
+ * {@value #GENERATED_SUFFIX} with a static method {@code metadata()},
+ * or computed at runtime by reflection if there is no generated class.
+ *
+ * @param beanType the class of the entity.
+ * @param tableName the name of the table.
+ * @param factory a function that creates an instance of the entity or {@code null}
+ *                if the entity has no public default constructor.
+ * @param properties the properties of the entity sorted by name.
+ */
+public record EntityMetadata(Class<?> beanType, String tableName, Supplier<?> factory, List<PropertyMetadata> properties) {
+  /**
+   * Suffix of the name of the classes generated by the annotation processor.
+   */
+  public static final String GENERATED_SUFFIX = "_EntityMetadata";
+
+  /**
+   * Description of a property of an entity.
+   *
+   * @param name the name of the property.
+   * @param columnName the name of the column.
+   * @param type the type of the property.
+   * @param id true if the property is the primary key.
+   * @param generatedValue true if the value of the property is generated by the database.
+   * @param getter a function that returns the value of the property.
+   * @param setter a function that changes the value of the property or {@code null} if the property is read only.
+   */
+  public record PropertyMetadata(String name, String columnName, Class<?> type, boolean id, boolean generatedValue,
+                                 Function<Object, Object> getter, BiConsumer<Object, Object> setter) {
+    public PropertyMetadata {
+      Objects.requireNonNull(name);
+      Objects.requireNonNull(columnName);
+      Objects.requireNonNull(type);
+      Objects.requireNonNull(getter);
+    }
+  }
+
+  public EntityMetadata {
+    Objects.requireNonNull(beanType);
+    Objects.requireNonNull(tableName);
+    properties = List.copyOf(properties);
+  }
+
+  PropertyMetadata idProperty() {
+    return properties.stream().filter(PropertyMetadata::id).findFirst().orElse(null);
+  }
+}
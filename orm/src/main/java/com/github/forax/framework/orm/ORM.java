@@ -1,24 +1,34 @@
 package com.github.forax.framework.orm;
 
+import com.github.forax.framework.orm.EntityMetadata.PropertyMetadata;
 import org.h2.jdbcx.JdbcDataSource;
 
 import java.beans.BeanInfo;
 import java.beans.PropertyDescriptor;
 import java.io.Serial;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Proxy;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -66,22 +76,162 @@ public final class ORM {
 
   //Chaque thread a ca propre case de memoire locale donca pas de porbleme de concurence.
 
+  /**
+   * The context of the transaction running on the current thread,
+   * always set and removed together with {@link #DATA_THREAD_LOCAL}.
+   */
+  private static final ThreadLocal<TransactionContext> CONTEXT_THREAD_LOCAL = new ThreadLocal<>();
+
+  private static TransactionContext currentContext() {
+    var context = CONTEXT_THREAD_LOCAL.get();
+    if (context == null) {
+      throw new IllegalStateException();
+    }
+    return context;
+  }
+
   public static void transaction(JdbcDataSource dataSource, TransactionBlock block) throws SQLException {
+    transaction(dataSource, Propagation.REQUIRED, block);
+  }
+
+  public static void transaction(JdbcDataSource dataSource, Propagation propagation, TransactionBlock block) throws SQLException {
     Objects.requireNonNull(dataSource);
+    Objects.requireNonNull(propagation);
     Objects.requireNonNull(block);
 
+    var outerContext = CONTEXT_THREAD_LOCAL.get();
+    if (outerContext != null && outerContext.dataSource == dataSource) {
+      switch (propagation) {
+        case REQUIRED -> {
+          runBlock(block, () -> outerContext.rollbackOnly = true);
+          return;
+        }
+        case NESTED -> {
+          var connection = outerContext.connection;
+          var savepoint = connection.setSavepoint();
+          runBlock(block, () -> connection.rollback(savepoint));
+          connection.releaseSavepoint(savepoint);
+          return;
+        }
+        case REQUIRES_NEW -> {
+          // suspend the outer transaction
+        }
+      }
+    }
+
     try (var connection = dataSource.getConnection()) {
       connection.setAutoCommit(false);
+      var context = new TransactionContext(dataSource, connection);
+      CONTEXT_THREAD_LOCAL.set(context);
       DATA_THREAD_LOCAL.set(connection);
       try {
-        block.run();
-      } catch (UncheckedSQLException e) {
-        connection.rollback();
-        throw e.getCause();
+        runBlock(block, connection::rollback);
+        if (context.rollbackOnly) {
+          connection.rollback();
+          throw new SQLException("transaction rolled back because an inner transaction has failed");
+        }
+        connection.commit();
+      } finally {
+        context.close();
       }
-      connection.commit();
     } finally {
-      DATA_THREAD_LOCAL.remove();
+      if (outerContext == null) {
+        CONTEXT_THREAD_LOCAL.remove();
+        DATA_THREAD_LOCAL.remove();
+      } else {
+        CONTEXT_THREAD_LOCAL.set(outerContext);
+        DATA_THREAD_LOCAL.set(outerContext.connection);
+      }
+    }
+  }
+
+  private static void runBlock(TransactionBlock block, TransactionBlock rollback) throws SQLException {
+    try {
+      block.run();
+    } catch (UncheckedSQLException e) {
+      throw rollback(rollback, e.getCause());
+    } catch (SQLException e) {
+      throw rollback(rollback, e);
+    } catch (RuntimeException e) {
+      throw rollback(rollback, e);
+    } catch (Error e) {
+      throw rollback(rollback, e);
+    }
+  }
+
+  private static <E extends Throwable> E rollback(TransactionBlock rollback, E exception) {
+    try {
+      rollback.run();
+    } catch (SQLException e) {
+      exception.addSuppressed(e);
+    }
+    return exception;
+  }
+
+  /**
+   * How {@link #transaction(JdbcDataSource, Propagation, TransactionBlock)} behaves
+   * if a transaction on the same data source is already running on the current thread.
+   */
+  public enum Propagation {
+    /**
+     * Run inside the running transaction, if the block fails the whole transaction is rolled back.
+     */
+    REQUIRED,
+    /**
+     * Run inside the running transaction, if the block fails only its changes are rolled back
+     * using a savepoint.
+     */
+    NESTED,
+    /**
+     * Suspend the running transaction and run in a new transaction using a new connection.
+     */
+    REQUIRES_NEW
+  }
+
+  /**
+   * State associated to a running transaction, the connection, the prepared statements already
+   * created during the transaction and the entities known to be stored in the database.
+   */
+  private static final class TransactionContext {
+    private final JdbcDataSource dataSource;
+    private final Connection connection;
+    private final HashMap<String, PreparedStatement> statementMap = new HashMap<>();
+    private final Set<Object> persistentEntities = Collections.newSetFromMap(new IdentityHashMap<>());
+    private boolean rollbackOnly;
+
+    private TransactionContext(JdbcDataSource dataSource, Connection connection) {
+      this.dataSource = dataSource;
+      this.connection = connection;
+    }
+
+    Connection connection() {
+      return connection;
+    }
+
+    Set<Object> persistentEntities() {
+      return persistentEntities;
+    }
+
+    PreparedStatement prepareStatement(String sqlQuery) throws SQLException {
+      var statement = statementMap.get(sqlQuery);
+      if (statement == null) {
+        statement = connection.prepareStatement(sqlQuery, Statement.RETURN_GENERATED_KEYS);
+        statementMap.put(sqlQuery, statement);
+      }
+      return statement;
+    }
+
+    List<?> track(List<?> entities) {
+      persistentEntities.addAll(entities);
+      return entities;
+    }
+
+    void close() throws SQLException {
+      for (var statement : statementMap.values()) {
+        statement.close();
+      }
+      statementMap.clear();
+      persistentEntities.clear();
     }
   }
 
@@ -109,10 +259,60 @@ public final class ORM {
     return p.getReadMethod().getAnnotation(GeneratedValue.class) != null;
   }
 
-  private static String dbbType(PropertyDescriptor p) {
-    var name = findColumnName(p);
-    var method = p.getReadMethod();
-    var rawType = p.getPropertyType();
+  private static final ClassValue<EntityMetadata> ENTITY_METADATA_CLASS_VALUE = new ClassValue<>() {
+    @Override
+    protected EntityMetadata computeValue(Class<?> type) {
+      var metadata = generatedEntityMetadata(type);
+      return metadata != null ? metadata : reflectEntityMetadata(type);
+    }
+  };
+
+  static EntityMetadata entityMetadata(Class<?> beanType) {
+    return ENTITY_METADATA_CLASS_VALUE.get(beanType);
+  }
+
+  private static EntityMetadata generatedEntityMetadata(Class<?> beanType) {
+    Class<?> generatedClass;
+    try {
+      generatedClass = Class.forName(beanType.getName() + EntityMetadata.GENERATED_SUFFIX, true, beanType.getClassLoader());
+    } catch (ClassNotFoundException e) {
+      return null;
+    }
+    Method method;
+    try {
+      method = generatedClass.getMethod("metadata");
+    } catch (NoSuchMethodException e) {
+      throw (NoSuchMethodError) new NoSuchMethodError("no method metadata() in " + generatedClass.getName()).initCause(e);
+    }
+    return (EntityMetadata) Utils.invokeMethod(null, method);
+  }
+
+  static EntityMetadata reflectEntityMetadata(Class<?> beanType) {
+    var beanInfo = Utils.beanInfo(beanType);
+    var properties = beanProperties(beanInfo).stream()
+            .map(property -> {
+              var getter = property.getReadMethod();
+              var setter = property.getWriteMethod();
+              var type = property.getPropertyType();
+              return new PropertyMetadata(property.getName(), findColumnName(property), type,
+                      isPrimaryKey(property), isAutoIncrement(property),
+                      bean -> Utils.invokeMethod(bean, getter),
+                      setter == null ? null : (bean, value) -> Utils.invokeMethod(bean, setter, convert(value, type)));
+            })
+            .toList();
+    Supplier<?> factory;
+    try {
+      var constructor = beanType.getConstructor();
+      factory = () -> Utils.newInstance(constructor);
+    } catch (NoSuchMethodException e) {
+      factory = null;
+    }
+    return new EntityMetadata(beanType, findTableName(beanType), factory, properties);
+  }
+
+  private static String dbbType(PropertyMetadata p) {
+    var name = p.columnName();
+    var rawType = p.type();
 
     var type = TYPE_MAPPING.getOrDefault(rawType, DEFAULT_VALUE);
     var other = "";
@@ -122,7 +322,7 @@ public final class ORM {
       other += " NOT NULL";
     }
 
-    if (isAutoIncrement(p)) {
+    if (p.generatedValue()) {
       other += " AUTO_INCREMENT";
     }
 
@@ -131,21 +331,16 @@ public final class ORM {
 
   public static void createTable(Class<?> beanType) throws SQLException {
     Objects.requireNonNull(beanType);
-    var beanInfo = Utils.beanInfo(beanType);
-    var tableName = findTableName(beanType);
-
-
-    var propertyDescriptors =
-            Arrays.stream(beanInfo.getPropertyDescriptors()).filter(p -> !p.getName().equals("class")).toList();
+    var metadata = entityMetadata(beanType);
 
     var sb = new StringBuilder();
-    sb.append("CREATE TABLE ").append(tableName).append(" (\n");
+    sb.append("CREATE TABLE ").append(metadata.tableName()).append(" (\n");
 
     var separator = "";
     String primaryCollumn = null;
-    for (var p : propertyDescriptors) {
-      if (isPrimaryKey(p)) {
-        primaryCollumn = findColumnName(p);
+    for (var p : metadata.properties()) {
+      if (p.id()) {
+        primaryCollumn = p.columnName();
       }
       sb.append(separator).append(dbbType(p));
       separator = ",\n";
@@ -165,52 +360,249 @@ public final class ORM {
   }
 
   public static <R extends Repository<?, ?>> R createRepository(Class<R> type) {
-    var beanType = findBeanTypeFromRepository(type);
-    var beanInfo = Utils.beanInfo(beanType);
-    var constructor = Utils.defaultConstructor(beanType);
-    var tableName = findTableName(beanType);
-    var primaryProperty = findId(beanInfo);
-    var idName = primaryProperty == null ? null : findColumnName(primaryProperty);
+    var methodMap = createRepositoryMethods(type);
+    return createProxy(type, methodMap);
+  }
 
-    var findAllQuery = "SELECT * FROM " + tableName;
-    var findByIdQuery = "SELECT * FROM " + tableName + " WHERE " + idName + " = ?";
+  /**
+   * Creates a repository and eagerly checks, using a transaction on the data source,
+   * that all the SQL queries of the repository are valid and that the columns returned
+   * by the queries match the properties of the entity.
+   * The check runs in its own transaction ({@link Propagation#REQUIRES_NEW}), so if it fails,
+   * a transaction already running on the current thread is not rolled back.
+   *
+   * Only the caches that do not depend on a connection are warmed, the metadata of the entity
+   * and the SQL queries of the methods. A prepared statement belongs to a connection,
+   * so the statements prepared by the check are closed at the end of its transaction
+   * and the first call of a method in each transaction still prepares its statement.
+   *
+   * @throws SQLException if a query is not valid
+   * @throws IllegalStateException if the columns do not match the properties of the entity
+   */
+  public static <R extends Repository<?, ?>> R createRepository(Class<R> type, JdbcDataSource dataSource) throws SQLException {
+    Objects.requireNonNull(dataSource);
+    var methodMap = createRepositoryMethods(type);
+    var properties = entityMetadata(findBeanTypeFromRepository(type)).properties();
+    transaction(dataSource, Propagation.REQUIRES_NEW, () -> {
+      var context = currentContext();
+      for (var entry : methodMap.entrySet()) {
+        validateRepositoryMethod(context, entry.getKey(), entry.getValue(), properties);
+      }
+    });
+    return createProxy(type, methodMap);
+  }
+
+  /**
+   * The implementation of a method of a repository and the SQL queries it uses.
+   * If {@code selectEntities} is true, the queries return rows of the entity table.
+   */
+  private record RepositoryMethod(List<String> sqlQueries, boolean selectEntities, MethodBody body) {}
+
+  @FunctionalInterface
+  private interface MethodBody {
+    Object invoke(TransactionContext context, Object[] args) throws SQLException;
+  }
+
+  private static <R> R createProxy(Class<R> type, Map<Method, RepositoryMethod> methodMap) {
     return type.cast(
             Proxy.newProxyInstance(Repository.class.getClassLoader(), new Class[] {type}, (o, method, args) -> {
-              var connection = currentConnection();
-              try {
-                return switch (method.getName()) {
-                  case "findAll" -> findAll(connection, findAllQuery, beanInfo, constructor);
-                  case "save" -> save(connection, tableName, beanInfo, args[0], primaryProperty);
-                  case "findById" -> findAll(connection, findByIdQuery, beanInfo, constructor, args[0]).stream().findFirst();
-                  case "toString", "hashCode", "equals" -> throw new UnsupportedOperationException();
-                  default -> throw new IllegalStateException();
+              var repositoryMethod = methodMap.get(method);
+              if (repositoryMethod == null) {
+                throw switch (method.getName()) {
+                  case "toString", "hashCode", "equals" -> new UnsupportedOperationException();
+                  default -> new IllegalStateException();
                 };
+              }
+              var context = currentContext();
+              try {
+                return repositoryMethod.body.invoke(context, args);
               } catch (SQLException e){
                 throw new UncheckedSQLException(e);
               }
             }));
   }
 
+  private static Map<Method, RepositoryMethod> createRepositoryMethods(Class<?> type) {
+    var beanType = findBeanTypeFromRepository(type);
+    var metadata = entityMetadata(beanType);
+    if (metadata.factory() == null) {
+      throw new NoSuchMethodError("no public default constructor " + beanType.getName());
+    }
+    var tableName = metadata.tableName();
+    var primaryProperty = metadata.idProperty();
+    var idName = primaryProperty == null ? null : primaryProperty.columnName();
+
+    var findAllQuery = "SELECT * FROM " + tableName;
+    var findByIdQuery = "SELECT * FROM " + tableName + " WHERE " + idName + " = ?";
+    var deleteByIdQuery = "DELETE FROM " + tableName + " WHERE " + idName + " = ?";
+    var deleteAllQuery = createDeleteInQuery(tableName, idName, DELETE_CHUNK_SIZE);
+    var saveQueries = createSaveQueries(metadata);
+
+    var methodMap = new HashMap<Method, RepositoryMethod>();
+    for (var method : type.getMethods()) {
+      if (Modifier.isStatic(method.getModifiers())) {
+        continue;
+      }
+      var repositoryMethod = switch (method.getName()) {
+        case "findAll" -> new RepositoryMethod(List.of(findAllQuery), true, (context, args) ->
+                context.track(findAll(context.prepareStatement(findAllQuery), metadata)));
+        case "save" -> new RepositoryMethod(saveQueries.sqlQueries(), false, (context, args) ->
+                save(context, saveQueries, args[0]));
+        case "findById" -> new RepositoryMethod(idQueries(primaryProperty, findByIdQuery), true, (context, args) ->
+                context.track(findAll(context.prepareStatement(findByIdQuery), metadata, args[0])).stream().findFirst());
+        case "deleteById" -> new RepositoryMethod(idQueries(primaryProperty, deleteByIdQuery), false, (context, args) -> {
+          checkId(primaryProperty, type);
+          executeUpdate(context.prepareStatement(deleteByIdQuery), args[0]);
+          return null;
+        });
+        case "deleteAll" -> new RepositoryMethod(idQueries(primaryProperty, deleteAllQuery), false, (context, args) -> {
+          checkId(primaryProperty, type);
+          deleteAll(context, tableName, idName, (Iterable<?>) args[0]);
+          return null;
+        });
+        default -> {
+          var query = method.getAnnotation(Query.class);
+          if (query == null) {
+            yield new RepositoryMethod(List.of(), false, (context, args) -> {
+              throw new IllegalStateException();
+            });
+          }
+          var sqlQuery = query.value();
+          var returnType = method.getReturnType();
+          if (!isSelectQuery(sqlQuery)) {
+            if (!isUpdateCount(returnType)) {
+              throw new IllegalStateException("method " + method + " runs a modifying statement " + sqlQuery +
+                      ", its return type should be void, int, long, Integer or Long");
+            }
+            yield new RepositoryMethod(List.of(sqlQuery), false, (context, args) -> {
+              var count = executeUpdate(context.prepareStatement(sqlQuery), args);
+              return returnType == void.class ? null : convert(count, returnType);
+            });
+          }
+          if (returnType == void.class) {
+            throw new IllegalStateException("method " + method + " runs a query " + sqlQuery + ", it should return a value");
+          }
+          if (isScalar(returnType)) {
+            yield new RepositoryMethod(List.of(sqlQuery), false, (context, args) ->
+                    findScalar(context.prepareStatement(sqlQuery), returnType, args));
+          }
+          yield new RepositoryMethod(List.of(sqlQuery), true, (context, args) ->
+                  context.track(findAll(context.prepareStatement(sqlQuery), metadata, args)));
+        }
+      };
+      methodMap.put(method, repositoryMethod);
+    }
+    return methodMap;
+  }
+
+  private static List<String> idQueries(PropertyMetadata idProperty, String sqlQuery) {
+    // without an @Id, the query is not valid and the method fails when called
+    return idProperty == null ? List.of() : List.of(sqlQuery);
+  }
+
+  private static void validateRepositoryMethod(TransactionContext context, Method method, RepositoryMethod repositoryMethod,
+                                               List<PropertyMetadata> properties) throws SQLException {
+    // the statements are only prepared to be checked, they are closed with the transaction
+    for (var sqlQuery : repositoryMethod.sqlQueries) {
+      PreparedStatement statement;
+      try {
+        statement = context.prepareStatement(sqlQuery);
+      } catch (SQLException e) {
+        throw new SQLException("invalid query " + sqlQuery + " for method " + method, e.getSQLState(), e.getErrorCode(), e);
+      }
+      if (repositoryMethod.selectEntities) {
+        validateColumns(statement.getMetaData(), properties, method);
+      }
+    }
+  }
+
+  private static void validateColumns(ResultSetMetaData metaData, List<PropertyMetadata> properties, Method method) throws SQLException {
+    if (metaData == null) {  // unknown before execution
+      return;
+    }
+    if (metaData.getColumnCount() != properties.size()) {
+      throw new IllegalStateException("method " + method + " returns " + metaData.getColumnCount() +
+              " columns but the entity has " + properties.size() + " properties");
+    }
+    for (var i = 0; i < properties.size(); i++) {
+      var property = properties.get(i);
+      var columnName = metaData.getColumnLabel(i + 1);
+      if (!columnName.equalsIgnoreCase(property.columnName())) {
+        throw new IllegalStateException("method " + method + " column " + columnName +
+                " does not match the property " + property.name());
+      }
+      if (property.setter() == null) {
+        throw new IllegalStateException("method " + method + " no setter for the property " + property.name());
+      }
+      var propertyType = MethodType.methodType(property.type()).wrap().returnType();
+      Class<?> columnType;
+      try {
+        columnType = Class.forName(metaData.getColumnClassName(i + 1), false, ORM.class.getClassLoader());
+      } catch (ClassNotFoundException e) {
+        continue;  // unknown driver specific type
+      }
+      if (!isCompatible(propertyType, columnType)) {
+        throw new IllegalStateException("method " + method + " column " + columnName + " of type " + columnType.getName() +
+                " is not compatible with the property " + property.name() + " of type " + propertyType.getName());
+      }
+    }
+  }
+
+  private static final Set<Class<?>> NUMERIC_WRAPPERS =
+          Set.of(Byte.class, Short.class, Integer.class, Long.class, Float.class, Double.class);
+
+  /**
+   * Returns true if the value of a column can be stored in a property, using the same rules
+   * as the setters of the properties, see {@link #convert(Object, Class)}, so a number can be stored
+   * in any numeric primitive type or wrapper.
+   */
+  private static boolean isCompatible(Class<?> propertyType, Class<?> columnType) {
+    return propertyType.isAssignableFrom(columnType)
+            || Number.class.isAssignableFrom(columnType) && NUMERIC_WRAPPERS.contains(propertyType);
+  }
+
   static List<?> findAll(Connection connection, String sqlQuery, BeanInfo beanInfo, Constructor<?> constructor, Object ... args)
           throws SQLException {
     try (var statement = connection.prepareStatement(sqlQuery)) {
-      if (args != null){
-        int index = 1;
-        for(var arg : args){
-          statement.setObject(index++, arg);
-        }
+      return findAll(statement, resultSet -> toEntityClass(beanInfo, constructor, resultSet), args);
+    }
+  }
+
+  private static List<?> findAll(PreparedStatement statement, EntityMetadata metadata, Object ... args) throws SQLException {
+    return findAll(statement, resultSet -> toEntity(metadata, resultSet), args);
+  }
+
+  @FunctionalInterface
+  private interface RowMapper {
+    Object map(ResultSet resultSet) throws SQLException;
+  }
+
+  private static List<?> findAll(PreparedStatement statement, RowMapper rowMapper, Object ... args) throws SQLException {
+    if (args != null){
+      int index = 1;
+      for(var arg : args){
+        statement.setObject(index++, arg);
       }
-      try (var resultSet = statement.executeQuery()) {
-        var toReturn = new ArrayList<>();
-        while (resultSet.next()) {
-          var bean = toEntityClass(beanInfo, constructor, resultSet);
-          toReturn.add(bean);
-        }
-        return toReturn;
+    }
+    try (var resultSet = statement.executeQuery()) {
+      var toReturn = new ArrayList<>();
+      while (resultSet.next()) {
+        var bean = rowMapper.map(resultSet);
+        toReturn.add(bean);
       }
+      return toReturn;
     }
   }
 
+  private static Object toEntity(EntityMetadata metadata, ResultSet resultSet) throws SQLException {
+    var bean = metadata.factory().get();
+    var index = 1;
+    for (var property : metadata.properties()) {
+      var value = resultSet.getObject(index++);
+      property.setter().accept(bean, value);
+    }
+    return bean;
+  }
 
   static Object toEntityClass(BeanInfo beanInfo, Constructor<?> constructor, ResultSet resultSet) throws SQLException {
     var bean = Utils.newInstance(constructor);
@@ -228,30 +620,230 @@ public final class ORM {
 
   public static Object save(Connection connection, String tableName, BeanInfo beanInfo, Object bean, PropertyDescriptor idProperty) throws SQLException {
     var sqlQuery = createMergeQuery(tableName, beanInfo);
+    var properties = entityMetadata(beanInfo.getBeanDescriptor().getBeanClass()).properties();
+    var id = idProperty == null ? null :
+            properties.stream().filter(p -> p.name().equals(idProperty.getName())).findFirst().orElseThrow();
     try (var statement = connection.prepareStatement(sqlQuery, Statement.RETURN_GENERATED_KEYS)) {
-        int index = 1;
-        for(var property : beanInfo.getPropertyDescriptors()){
-          if(property.getName().equals("class")){
-            continue;
-          }
-          var readMethod = property.getReadMethod();
-          var result = Utils.invokeMethod(bean, readMethod);
-          statement.setObject(index++, result);
+      return executeSave(statement, properties, bean, id);
+    }
+  }
+
+  /**
+   * The queries used to save an entity, an INSERT if the entity is new (its id is null),
+   * an UPDATE if the entity has been loaded by the current transaction and
+   * a MERGE if the state of the entity is unknown.
+   */
+  record SaveQueries(PropertyMetadata idProperty,
+                     String insertQuery, List<PropertyMetadata> insertProperties,
+                     String updateQuery, List<PropertyMetadata> updateProperties,
+                     String mergeQuery, List<PropertyMetadata> mergeProperties) {
+    List<String> sqlQueries() {
+      return Stream.of(insertQuery, updateQuery, mergeQuery).filter(Objects::nonNull).toList();
+    }
+  }
+
+  static SaveQueries createSaveQueries(EntityMetadata metadata) {
+    var tableName = metadata.tableName();
+    var idProperty = metadata.idProperty();
+    var properties = metadata.properties();
+    var insertProperties = properties.stream()
+            .filter(p -> !(p.id() && p.generatedValue()))
+            .toList();
+    var nonIdProperties = properties.stream().filter(p -> !p.id()).toList();
+    String updateQuery = null;
+    List<PropertyMetadata> updateProperties = null;
+    if (idProperty != null && !nonIdProperties.isEmpty()) {
+      updateQuery = "UPDATE " + tableName + " SET " + nonIdProperties.stream()
+              .map(p -> p.columnName() + " = ?")
+              .collect(Collectors.joining(", ")) + " WHERE " + idProperty.columnName() + " = ?;";
+      updateProperties = Stream.concat(nonIdProperties.stream(), Stream.of(idProperty)).toList();
+    }
+    return new SaveQueries(idProperty,
+            createQuery("INSERT INTO ", tableName, columnNames(insertProperties)), insertProperties,
+            updateQuery, updateProperties,
+            createQuery("MERGE INTO ", tableName, columnNames(properties)), properties);
+  }
+
+  private static Object save(TransactionContext context, SaveQueries queries, Object bean) throws SQLException {
+    var idProperty = queries.idProperty;
+    if (idProperty != null) {
+      var id = idProperty.getter().apply(bean);
+      if (id == null) {
+        // we do not track the inserted entities, it would retain all the entities of a batch insert,
+        // a subsequent save will use a MERGE
+        return executeSave(context.prepareStatement(queries.insertQuery), queries.insertProperties, bean, idProperty);
+      }
+      if (context.persistentEntities().contains(bean)) {
+        if (queries.updateQuery == null) {  // only an id, nothing to update
+          return bean;
+        }
+        var values = propertyValues(queries.updateProperties, bean);
+        if (executeUpdate(context.prepareStatement(queries.updateQuery), values) != 0) {
+          return bean;
         }
-        statement.executeUpdate();
+        // the row was deleted after being loaded, fallback to a MERGE
+      }
+    }
+    return executeSave(context.prepareStatement(queries.mergeQuery), queries.mergeProperties, bean, idProperty);
+  }
 
-        if(idProperty != null) {
-          try (var resultSet = statement.getGeneratedKeys()) {
-            if (resultSet.next()) {
-              var key = resultSet.getObject(1);
-              Utils.invokeMethod(bean, idProperty.getWriteMethod(), key);
-            }
-          }
+  private static Object[] propertyValues(List<PropertyMetadata> properties, Object bean) {
+    var values = new Object[properties.size()];
+    for (var i = 0; i < values.length; i++) {
+      values[i] = properties.get(i).getter().apply(bean);
+    }
+    return values;
+  }
+
+  private static Object executeSave(PreparedStatement statement, List<PropertyMetadata> properties, Object bean, PropertyMetadata idProperty) throws SQLException {
+    executeUpdate(statement, propertyValues(properties, bean));
+
+    if(idProperty != null) {
+      try (var resultSet = statement.getGeneratedKeys()) {
+        if (resultSet.next()) {
+          var key = resultSet.getObject(1);
+          idProperty.setter().accept(bean, key);
         }
+      }
     }
     return bean;
   }
 
+  private static void checkId(PropertyMetadata idProperty, Class<?> repositoryType) {
+    if (idProperty == null) {
+      throw new IllegalStateException("no @Id property for the entity of " + repositoryType.getName());
+    }
+  }
+
+  /**
+   * Number of ids sent in one DELETE ... IN (...) query by {@link Repository#deleteAll(Iterable)}.
+   */
+  private static final int DELETE_CHUNK_SIZE = 64;
+
+  private static void deleteAll(TransactionContext context, String tableName, String idName, Iterable<?> ids) throws SQLException {
+    var chunkQuery = createDeleteInQuery(tableName, idName, DELETE_CHUNK_SIZE);
+    var chunk = new Object[DELETE_CHUNK_SIZE];
+    var size = 0;
+    for (var id : ids) {
+      chunk[size++] = Objects.requireNonNull(id);
+      if (size == DELETE_CHUNK_SIZE) {
+        executeUpdate(context.prepareStatement(chunkQuery), chunk);
+        size = 0;
+      }
+    }
+    if (size != 0) {
+      executeUpdate(context.prepareStatement(createDeleteInQuery(tableName, idName, size)), Arrays.copyOf(chunk, size));
+    }
+  }
+
+  static String createDeleteInQuery(String tableName, String idName, int count) {
+    return "DELETE FROM " + tableName + " WHERE " + idName + " IN (" + String.join(", ", Collections.nCopies(count, "?")) + ");";
+  }
+
+  /**
+   * The first keywords of the SQL statements that return rows,
+   * the other statements (INSERT, UPDATE, DELETE, MERGE, CREATE, etc) return an update count.
+   */
+  private static final Set<String> SELECT_KEYWORDS = Set.of("SELECT", "WITH", "VALUES", "TABLE", "SHOW", "EXPLAIN");
+
+  /**
+   * Returns true if the SQL statement is a query that returns rows, the kind of statement is found
+   * using its first keyword, skipping the whitespaces, the comments and the opening parenthesis.
+   */
+  static boolean isSelectQuery(String sqlQuery) {
+    var length = sqlQuery.length();
+    var index = 0;
+    while (index < length) {
+      var c = sqlQuery.charAt(index);
+      if (Character.isWhitespace(c) || c == '(') {
+        index++;
+      } else if (sqlQuery.startsWith("--", index)) {
+        var end = sqlQuery.indexOf('\n', index);
+        index = end == -1 ? length : end + 1;
+      } else if (sqlQuery.startsWith("/*", index)) {
+        var end = sqlQuery.indexOf("*/", index + 2);
+        index = end == -1 ? length : end + 2;
+      } else {
+        break;
+      }
+    }
+    var start = index;
+    while (index < length && Character.isLetter(sqlQuery.charAt(index))) {
+      index++;
+    }
+    return SELECT_KEYWORDS.contains(sqlQuery.substring(start, index).toUpperCase(Locale.ROOT));
+  }
+
+  private static boolean isUpdateCount(Class<?> returnType) {
+    return returnType == void.class || returnType == int.class || returnType == long.class
+            || returnType == Integer.class || returnType == Long.class;
+  }
+
+  /**
+   * Returns true if a query method returns the value of the first column of the first row
+   * instead of a list of entities.
+   */
+  private static boolean isScalar(Class<?> returnType) {
+    return returnType.isPrimitive() || returnType == String.class || returnType == Boolean.class
+            || returnType == Character.class || Number.class.isAssignableFrom(returnType);
+  }
+
+  private static Object findScalar(PreparedStatement statement, Class<?> returnType, Object... args) throws SQLException {
+    var values = findAll(statement, resultSet -> resultSet.getObject(1), args);
+    var value = values.isEmpty() ? null : values.getFirst();
+    if (value == null) {
+      if (returnType.isPrimitive()) {
+        throw new IllegalStateException("no value returned for the primitive type " + returnType.getName());
+      }
+      return null;
+    }
+    var result = convert(value, returnType);
+    if (!MethodType.methodType(returnType).wrap().returnType().isInstance(result)) {
+      throw new IllegalStateException("can not convert " + value + " to " + returnType.getName());
+    }
+    return result;
+  }
+
+  /**
+   * Converts a value returned by JDBC to a type, a number is converted to any numeric primitive type or wrapper,
+   * the other values are returned unchanged.
+   */
+  static Object convert(Object value, Class<?> type) {
+    if (!(value instanceof Number number)) {
+      return value;
+    }
+    var wrapper = MethodType.methodType(type).wrap().returnType();
+    if (wrapper == Integer.class) {
+      return number.intValue();
+    }
+    if (wrapper == Long.class) {
+      return number.longValue();
+    }
+    if (wrapper == Double.class) {
+      return number.doubleValue();
+    }
+    if (wrapper == Float.class) {
+      return number.floatValue();
+    }
+    if (wrapper == Short.class) {
+      return number.shortValue();
+    }
+    if (wrapper == Byte.class) {
+      return number.byteValue();
+    }
+    return value;
+  }
+
+  private static int executeUpdate(PreparedStatement statement, Object... args) throws SQLException {
+    if (args != null) {
+      int index = 1;
+      for (var arg : args) {
+        statement.setObject(index++, arg);
+      }
+    }
+    return statement.executeUpdate();
+  }
+
   static PropertyDescriptor findId(BeanInfo beanInfo){
     return Arrays.stream(beanInfo.getPropertyDescriptors()).filter(ORM::isPrimaryKey).findFirst().orElse(null);
   }
@@ -276,19 +868,27 @@ public final class ORM {
   }
 
 
-  static String createSaveQuery(String tableName, BeanInfo beanInfo){
-    var propertyDescriptors = beanInfo.getPropertyDescriptors();
-    return "INSERT INTO " + tableName + " " + Arrays.stream(propertyDescriptors).filter(p -> !p.getName().equals("class")).map(e -> findColumnName(e).toLowerCase(
+  private static List<PropertyDescriptor> beanProperties(BeanInfo beanInfo) {
+    return Arrays.stream(beanInfo.getPropertyDescriptors()).filter(p -> !p.getName().equals("class")).toList();
+  }
+
+  private static List<String> columnNames(List<PropertyMetadata> properties) {
+    return properties.stream().map(PropertyMetadata::columnName).toList();
+  }
+
+  private static String createQuery(String command, String tableName, List<String> columnNames) {
+    return command + tableName + " " + columnNames.stream().map(e -> e.toLowerCase(
             Locale.ROOT)).collect(
-            Collectors.joining(", ", "(", ")")) + " VALUES (" + String.join(", ", Collections.nCopies(propertyDescriptors.length - 1, "?")) + ");";
+            Collectors.joining(", ", "(", ")")) + " VALUES (" + String.join(", ", Collections.nCopies(columnNames.size(), "?")) + ");";
+  }
+
+  static String createSaveQuery(String tableName, BeanInfo beanInfo){
+    return createQuery("INSERT INTO ", tableName, beanProperties(beanInfo).stream().map(ORM::findColumnName).toList());
   }
 
 
   static String createMergeQuery(String tableName, BeanInfo beanInfo){
-    var propertyDescriptors = beanInfo.getPropertyDescriptors();
-    return "MERGE INTO " + tableName + " " + Arrays.stream(propertyDescriptors).filter(p -> !p.getName().equals("class")).map(e -> findColumnName(e).toLowerCase(
-            Locale.ROOT)).collect(
-            Collectors.joining(", ", "(", ")")) + " VALUES (" + String.join(", ", Collections.nCopies(propertyDescriptors.length - 1, "?")) + ");";
+    return createQuery("MERGE INTO ", tableName, beanProperties(beanInfo).stream().map(ORM::findColumnName).toList());
   }
 
 }
@@ -7,4 +7,6 @@ public interface Repository<T, ID> {
   List<T> findAll();
   Optional<T> findById(ID id);
   T save(T entity);
+  void deleteById(ID id);
+  void deleteAll(Iterable<? extends ID> ids);
 }
\ No newline at end of file